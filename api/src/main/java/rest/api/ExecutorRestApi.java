@@ -1,26 +1,42 @@
 package rest.api;
 
+import java.util.List;
+import org.springframework.core.io.Resource;
 import rest.api.doc.annotations.CancelExecApiEndPoint;
 import rest.api.doc.annotations.DeleteExecApiEndpoint;
 import rest.api.doc.annotations.ExecuteScriptApiEndpoint;
+import rest.api.doc.annotations.ExecuteScriptBatchApiEndpoint;
 import rest.api.doc.annotations.GetAllExecIdsApiEndpoint;
+import rest.api.doc.annotations.GetExecOutputApiEndpoint;
 import rest.api.doc.annotations.GetExecStatusApiEndpoint;
+import rest.api.doc.annotations.GetExecStatusesApiEndpoint;
 import rest.api.doc.annotations.GetFinishedExecIdsApiEndpoint;
-import rest.api.dto.BlockingExecResp;
+import rest.api.dto.BatchExecResp;
 import rest.api.dto.ExecReq;
 import rest.api.dto.ScriptId;
 import rest.api.dto.ScriptListResp;
+import rest.api.dto.StatusBatchReq;
+import rest.api.dto.StatusBatchResp;
 import rest.api.dto.StatusResp;
 
+// Endpoints that answer asynchronously through servlet types (DeferredResult, SseEmitter)
+// are declared on the controller only, so this module does not depend on Spring MVC.
 public interface ExecutorRestApi {
 
   @ExecuteScriptApiEndpoint
-  ScriptId executeScriptAsync(ExecReq body);
+  ScriptId executeScriptAsync(ExecReq body, String tenant);
 
-  BlockingExecResp executeScriptWithBlocking(ExecReq body);
+  @ExecuteScriptBatchApiEndpoint
+  BatchExecResp executeScriptBatch(List<ExecReq> body, Boolean atomic, String tenant);
 
   @GetExecStatusApiEndpoint
-  StatusResp getExecutionStatus(String id);
+  StatusResp getExecutionStatus(String id, Long offset);
+
+  @GetExecStatusesApiEndpoint
+  StatusBatchResp getExecutionStatuses(StatusBatchReq body, Boolean output);
+
+  @GetExecOutputApiEndpoint
+  Resource getExecutionOutput(String id);
 
   @CancelExecApiEndPoint
   void cancelExecution(String id);
@@ -29,8 +45,8 @@ public interface ExecutorRestApi {
   void deleteExecution(String id);
 
   @GetFinishedExecIdsApiEndpoint
-  ScriptListResp getFinishedExecutions();
+  ScriptListResp getFinishedExecutions(Integer limit, String cursor);
 
   @GetAllExecIdsApiEndpoint
-  ScriptListResp getAllExecutions();
+  ScriptListResp getAllExecutions(Integer limit, String cursor);
 }
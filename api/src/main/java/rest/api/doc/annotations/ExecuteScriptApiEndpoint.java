@@ -22,7 +22,14 @@ import rest.api.dto.ScriptId;
 @Operation(
       summary = "Execute script",
       description = "There are async and blocking requests. " +
-            "The first one returns execution id, the second -- execution result info.",
+            "The first one returns execution id, the second -- execution result info. " +
+            "Optional priority is one of interactive, normal (default) or batch. " +
+            "The tenant is taken from the X-Tenant-Id header or the tenant field; " +
+            "tenants share workers according to their configured weights. " +
+            "Optional limits (statements, cpuTimeMs, allocatedBytes) can only lower the server defaults; " +
+            "an execution that exceeds one ends with LIMIT_EXCEEDED status. " +
+            "Optional timeoutMs bounds the async execution from submission, replacing the server default; " +
+            "an expired execution ends with TIMED_OUT status. It must not exceed the server maximum.",
       tags = { "script" },
       requestBody = @RequestBody(
             description = "script for executing",
@@ -40,6 +47,10 @@ import rest.api.dto.ScriptId;
                   @ExampleObject(name = "async request", value = "false"),
                   @ExampleObject(name = "blocking request", value = "true")},
             required = true
+      ), @Parameter(
+            name = "X-Tenant-Id",
+            description = "tenant of the submission, overrides the tenant field",
+            in = ParameterIn.HEADER
       )})
 @ApiResponses(value = {
       @ApiResponse(
@@ -58,6 +69,13 @@ import rest.api.dto.ScriptId;
                         mediaType = "application/json",
                         schema = @Schema(implementation = BlockingExecResp.class))
             }),
+      @ApiResponse(responseCode = "400",
+            description = "Error: unknown priority or timeoutMs out of range",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+      }),
       @ApiResponse(responseCode = "403",
             description = "Error: blocking time is over",
             content = {
@@ -65,6 +83,13 @@ import rest.api.dto.ScriptId;
                         mediaType = "application/json",
                         schema = @Schema(implementation = ErrorResp.class))
       }),
+      @ApiResponse(responseCode = "429",
+            description = "Error: execution queue is full, retry after the Retry-After header value in seconds",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+      }),
       @ApiResponse(responseCode = "500",
             description = "Error: server error",
             content = {
@@ -0,0 +1,87 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.BatchExecResp;
+import rest.api.dto.ErrorResp;
+import rest.api.dto.ExecReq;
+
+@Operation(
+      summary = "Execute scripts in a batch",
+      description = "Submits several async executions with one admission decision. " +
+            "Entries take the same fields as a single async request. " +
+            "Ids are returned in the order of the entries. " +
+            "If the queue cannot take the whole batch, the entries that do not fit are rejected " +
+            "from the end and get a null id; in atomic mode nothing is submitted and 429 is returned.",
+      tags = { "script" },
+      requestBody = @RequestBody(
+            description = "scripts for executing",
+            content = @Content(
+                  mediaType = "application/json",
+                  array = @ArraySchema(schema = @Schema(implementation = ExecReq.class))
+            ),
+            required = true
+      ),
+      parameters = {@Parameter(
+            name = "atomic",
+            description = "submit all entries or none of them, false by default",
+            in = ParameterIn.QUERY
+      ), @Parameter(
+            name = "X-Tenant-Id",
+            description = "tenant of the submissions, overrides the tenant fields",
+            in = ParameterIn.HEADER
+      )})
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "201",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = BatchExecResp.class))
+            }),
+      @ApiResponse(responseCode = "400",
+            description = "Error: unknown priority or timeoutMs out of range",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(responseCode = "413",
+            description = "Error: batch is too large",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(responseCode = "429",
+            description = "Error: queue cannot take the batch, see Retry-After",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExecuteScriptBatchApiEndpoint {
+}
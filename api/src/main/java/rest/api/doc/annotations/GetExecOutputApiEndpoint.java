@@ -0,0 +1,68 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.ErrorResp;
+
+@Operation(
+      summary = "Get execution output",
+      description = "Returns raw output. Output spilled to disk is served directly from the file. " +
+            "Supports Range requests, e.g. 'bytes=-4096' for the last 4 KB.",
+      tags = { "script" },
+      parameters = {
+            @Parameter(
+                  name = "id",
+                  in = ParameterIn.PATH,
+                  required = true),
+            @Parameter(
+                  name = "Range",
+                  in = ParameterIn.HEADER)
+      })
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "text/plain",
+                        schema = @Schema(type = "string"))
+            }),
+      @ApiResponse(
+            responseCode = "206",
+            description = "Partial content",
+            content = {
+                  @Content(
+                        mediaType = "text/plain",
+                        schema = @Schema(type = "string"))
+            }),
+      @ApiResponse(
+            responseCode = "404",
+            description = "Error: unknown id",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface GetExecOutputApiEndpoint {
+}
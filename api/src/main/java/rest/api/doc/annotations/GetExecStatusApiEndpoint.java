@@ -17,12 +17,19 @@ import rest.api.dto.StatusResp;
 
 @Operation(
       summary = "Get execution status",
+      description = "Returns output written since the given offset " +
+            "and the offset to pass with the next request.",
       tags = { "script" },
-      parameters = {@Parameter(
-            name = "id",
-            in = ParameterIn.PATH,
-            required = true
-      )})
+      parameters = {
+            @Parameter(
+                  name = "id",
+                  in = ParameterIn.PATH,
+                  required = true),
+            @Parameter(
+                  name = "offset",
+                  description = "output offset in bytes, 0 by default",
+                  in = ParameterIn.QUERY)
+      })
 @ApiResponses(value = {
       @ApiResponse(
             responseCode = "200",
@@ -0,0 +1,70 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.ErrorResp;
+import rest.api.dto.StatusBatchReq;
+import rest.api.dto.StatusBatchResp;
+
+@Operation(
+      summary = "Get statuses of several executions",
+      description = "Returns one entry per requested id, in request order. " +
+            "Only the status is returned unless output is requested, " +
+            "in which case entries also carry the whole output as the status endpoint does. " +
+            "An unknown id gets an entry with an error instead of failing the call.",
+      tags = { "script" },
+      requestBody = @RequestBody(
+            description = "ids of executions",
+            content = @Content(
+                  mediaType = "application/json",
+                  schema = @Schema(implementation = StatusBatchReq.class)
+            ),
+            required = true
+      ),
+      parameters = {
+            @Parameter(
+                  name = "output",
+                  description = "include output, false by default",
+                  in = ParameterIn.QUERY)
+      })
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = StatusBatchResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "413",
+            description = "Error: too many ids",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface GetExecStatusesApiEndpoint {
+}
@@ -3,6 +3,8 @@ package rest.api.doc.annotations;
 import static java.lang.annotation.ElementType.METHOD;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,7 +17,21 @@ import rest.api.dto.ScriptListResp;
 
 @Operation(
       summary = "Get finished execution ids",
-      tags = { "script list" }
+      description = "Returns ids in the order the executions finished, one page at a time, " +
+            "so an execution that finishes while the list is being paged shows up on a later page. " +
+            "Pass nextCursor from the response to get the next page; " +
+            "it is null on the last page.",
+      tags = { "script list" },
+      parameters = {
+            @Parameter(
+                  name = "limit",
+                  description = "page size, capped by the server",
+                  in = ParameterIn.QUERY),
+            @Parameter(
+                  name = "cursor",
+                  description = "nextCursor of the previous page",
+                  in = ParameterIn.QUERY)
+      }
 )
 @ApiResponses(value = {
       @ApiResponse(
@@ -27,6 +43,14 @@ import rest.api.dto.ScriptListResp;
                         schema = @Schema(implementation = ScriptListResp.class))
             }
       ),
+      @ApiResponse(
+            responseCode = "400",
+            description = "Error: invalid cursor",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
       @ApiResponse(
             responseCode = "500",
             description = "Error: server error",
@@ -0,0 +1,52 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.ErrorResp;
+
+@Operation(
+      summary = "Stream execution lifecycle events",
+      description = "Server-Sent Events: an 'exec' event carries an ExecEventResp for every status " +
+            "an execution enters (QUEUE, RUNNING, a final status) and DELETED when it is removed, " +
+            "with the sequence number as event id. " +
+            "'reset' means events before the stream were lost and the state should be reloaded; " +
+            "'overflow' ends a stream that fell behind, reconnect with the last event id to resume.",
+      tags = { "script" },
+      parameters = {
+            @Parameter(
+                  name = "Last-Event-ID",
+                  description = "sequence number to resume after",
+                  in = ParameterIn.HEADER)
+      })
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "text/event-stream",
+                        schema = @Schema(type = "string"))
+            }),
+      @ApiResponse(
+            responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamExecEventsApiEndpoint {
+}
@@ -0,0 +1,62 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.ErrorResp;
+
+@Operation(
+      summary = "Stream execution output",
+      description = "Server-Sent Events: 'output' events carry an OutputChunkResp with new output " +
+            "and the offset to resume from (also sent as event id), " +
+            "the final 'status' event carries the result status.",
+      tags = { "script" },
+      parameters = {
+            @Parameter(
+                  name = "id",
+                  in = ParameterIn.PATH,
+                  required = true),
+            @Parameter(
+                  name = "Last-Event-ID",
+                  description = "output offset to resume from",
+                  in = ParameterIn.HEADER)
+      })
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "text/event-stream",
+                        schema = @Schema(type = "string"))
+            }),
+      @ApiResponse(
+            responseCode = "404",
+            description = "Error: unknown id",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamExecOutputApiEndpoint {
+}
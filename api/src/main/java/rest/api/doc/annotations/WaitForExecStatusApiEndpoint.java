@@ -0,0 +1,80 @@
+package rest.api.doc.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import rest.api.dto.ErrorResp;
+import rest.api.dto.StatusResp;
+
+@Operation(
+      summary = "Wait for execution to finish",
+      description = "Returns as soon as the execution reaches a terminal status, " +
+            "or at the timeout with the status it has then.",
+      tags = { "script" },
+      parameters = {
+            @Parameter(
+                  name = "id",
+                  in = ParameterIn.PATH,
+                  required = true),
+            @Parameter(
+                  name = "waitFor",
+                  description = "condition to wait for, only 'finished' is supported",
+                  in = ParameterIn.QUERY,
+                  required = true),
+            @Parameter(
+                  name = "timeout",
+                  description = "how long to wait, e.g. 30s or 500ms; seconds if no unit is given, " +
+                        "30s by default, capped by the server",
+                  in = ParameterIn.QUERY),
+            @Parameter(
+                  name = "offset",
+                  description = "output offset in bytes, 0 by default",
+                  in = ParameterIn.QUERY)
+      })
+@ApiResponses(value = {
+      @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = StatusResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "400",
+            description = "Error: invalid wait condition or timeout",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "404",
+            description = "Error: unknown id",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            }),
+      @ApiResponse(
+            responseCode = "500",
+            description = "Error: server error",
+            content = {
+                  @Content(
+                        mediaType = "application/json",
+                        schema = @Schema(implementation = ErrorResp.class))
+            })
+})
+@Target({METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WaitForExecStatusApiEndpoint {
+}
@@ -0,0 +1,12 @@
+package rest.api.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class BatchExecResp {
+  private final List<ScriptId> scripts;
+  private final int rejected;
+}
@@ -0,0 +1,13 @@
+package rest.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class ExecEventResp {
+  private final long seq;
+  private final String id;
+  private final String event;
+  private final long timestamp;
+}
@@ -9,4 +9,8 @@ import lombok.NoArgsConstructor;
 @Data
 public class ExecReq {
   private String script;
+  private String priority;
+  private String tenant;
+  private LimitsReq limits;
+  private Long timeoutMs;
 }
@@ -0,0 +1,14 @@
+package rest.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class LimitsReq {
+  private Long statements;
+  private Long cpuTimeMs;
+  private Long allocatedBytes;
+}
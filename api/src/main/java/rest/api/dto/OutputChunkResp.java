@@ -0,0 +1,11 @@
+package rest.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class OutputChunkResp {
+  private final String output;
+  private final long offset;
+}
@@ -8,4 +8,5 @@ import lombok.Getter;
 @Getter
 public class ScriptListResp {
   private final List<ScriptId> scripts;
+  private final String nextCursor;
 }
@@ -0,0 +1,20 @@
+package rest.api.dto;
+
+import lombok.Getter;
+
+@Getter
+public class ScriptOutputResp extends ScriptStatusResp {
+  private final String output;
+  private final boolean outputTruncated;
+  private final boolean outputSpilled;
+  private final long offset;
+
+  public ScriptOutputResp(String id, String status, String output,
+                          boolean outputTruncated, boolean outputSpilled, long offset) {
+    super(id, status, null);
+    this.output = output;
+    this.outputTruncated = outputTruncated;
+    this.outputSpilled = outputSpilled;
+    this.offset = offset;
+  }
+}
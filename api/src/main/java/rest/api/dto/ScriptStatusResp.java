@@ -0,0 +1,13 @@
+package rest.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Entry of a bulk status lookup; error is set instead of status for an unknown id.
+@AllArgsConstructor
+@Getter
+public class ScriptStatusResp {
+  private final String id;
+  private final String status;
+  private final String error;
+}
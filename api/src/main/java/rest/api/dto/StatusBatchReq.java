@@ -0,0 +1,13 @@
+package rest.api.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class StatusBatchReq {
+  private List<String> ids;
+}
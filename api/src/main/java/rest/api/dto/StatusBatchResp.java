@@ -0,0 +1,11 @@
+package rest.api.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class StatusBatchResp {
+  private final List<ScriptStatusResp> scripts;
+}
@@ -9,4 +9,7 @@ import lombok.Getter;
 public class StatusResp {
   private final String status;
   private final String output;
+  private final boolean outputTruncated;
+  private final boolean outputSpilled;
+  private final long offset;
 }
@@ -0,0 +1,63 @@
+package bench;
+
+import impl.service.ContextPool;
+import impl.service.ResourceGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Cost of getting a ready context: built from scratch on the shared engine, or taken from
+// the pool (which refills in the background) with or without a statement limit.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContextCreationBenchmark {
+  @Param({"true", "false"})
+  public boolean pooled;
+
+  private SimpleMeterRegistry registry;
+  private Engine engine;
+  private ResourceGuard guard;
+  private ContextPool contextPool;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    engine = Engine.create();
+    guard = new ResourceGuard(0L, 0L, 0L, 10L, 1000L, 5000L, registry);
+    contextPool = new ContextPool("js", 16, pooled, engine, guard, registry);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    contextPool.close();
+    guard.close();
+    engine.close();
+  }
+
+  @Benchmark
+  public void acquire() {
+    try (Context context = contextPool.acquire(OutputStream.nullOutputStream())) {
+      context.initialize("js");
+    }
+  }
+
+  @Benchmark
+  public void acquireWithStatementLimit() {
+    try (Context context = contextPool.acquire(OutputStream.nullOutputStream(), 1_000_000)) {
+      context.initialize("js");
+    }
+  }
+}
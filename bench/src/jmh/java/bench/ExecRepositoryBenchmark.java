@@ -0,0 +1,101 @@
+package bench;
+
+import impl.repositories.ExecJournal;
+import impl.repositories.ExecRepositoryImpl;
+import impl.repositories.entities.ExecState;
+import impl.repositories.entities.Execution;
+import impl.service.ExecEventLog;
+import impl.service.ExecStatus;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Mixed add/get/list load on the repository. Added executions are finished, so the
+// max-finished retention keeps the map at a steady size during long runs; readers pick
+// ids from a ring the writer refills, so lookups keep hitting retained executions.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecRepositoryBenchmark {
+  private static final int PAGE_SIZE = 100;
+
+  @Param({"10000"})
+  public int preloaded;
+
+  private ExecRepositoryImpl repo;
+  private AtomicReferenceArray<String> ids;
+  private final AtomicLong added = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    repo = new ExecRepositoryImpl(0L, 2L * preloaded, 0L, 100L, new ExecEventLog(1000, 1000, registry),
+          ExecJournal.NONE, registry);
+    ids = new AtomicReferenceArray<>(preloaded);
+    for (int i = 0; i < preloaded; i++) {
+      add();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    repo.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private final Random random = new Random(42);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public String add() {
+    String id = repo.addExecution(finished());
+    ids.set((int) (added.getAndIncrement() % preloaded), id);
+    return id;
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(4)
+  public Optional<Execution> get(Cursor cursor) {
+    return repo.getExecution(ids.get(cursor.random.nextInt(preloaded)));
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public List<String> list(Cursor cursor) {
+    return repo.getAllIds().tailSet(ids.get(cursor.random.nextInt(preloaded))).stream()
+          .limit(PAGE_SIZE)
+          .collect(Collectors.toList());
+  }
+
+  private static Execution finished() {
+    return new Execution(
+          new ExecState(ExecStatus.DONE),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          CompletableFuture.completedFuture(null));
+  }
+}
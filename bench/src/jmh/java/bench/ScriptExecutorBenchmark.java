@@ -0,0 +1,90 @@
+package bench;
+
+import impl.repositories.entities.Execution;
+import impl.service.ContextPool;
+import impl.service.DeadlineWatchdog;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
+import impl.service.ExecQueue;
+import impl.service.ResourceGuard;
+import impl.service.ScriptExecutor;
+import impl.service.SourceCache;
+import impl.service.output.OutputArena;
+import impl.service.output.OutputBufferFactory;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+// Submission to completion through the real executor: queue, context pool and evaluation.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class ScriptExecutorBenchmark {
+  @Param({"TRIVIAL", "CPU", "OUTPUT"})
+  public Scripts script;
+
+  @Param({"4"})
+  public int workers;
+
+  private SimpleMeterRegistry registry;
+  private Engine engine;
+  private ContextPool contextPool;
+  private ResourceGuard guard;
+  private DeadlineWatchdog watchdog;
+  private ScriptExecutor executor;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    engine = Engine.create();
+    guard = new ResourceGuard(0L, 0L, 0L, 10L, 1000L, 5000L, registry);
+    watchdog = new DeadlineWatchdog(10L, 512, registry);
+    contextPool = new ContextPool("js", workers, true, engine, guard, registry);
+    executor = new ScriptExecutor(workers, 60L, 1000L, 30000L, 0L,
+          new ExecQueue(0, Map.of(), 1.0, registry),
+          new SourceCache("js", SourceCache.EvictionPolicy.COUNT, 100L, registry),
+          contextPool, guard, watchdog,
+          new OutputBufferFactory(OutputPolicy.TRUNCATE_HEAD, 10L * 1024 * 1024, 1024L * 1024,
+                System.getProperty("java.io.tmpdir"), 0.0, new OutputArena(true, false, 1024, registry)),
+          registry);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    executor.shutdownAndAwaitAll(1, TimeUnit.MINUTES);
+    contextPool.close();
+    watchdog.close();
+    guard.close();
+    engine.close();
+  }
+
+  @Benchmark
+  public Execution executeAsync() {
+    Execution exec = executor.executeAsync(script.getSource());
+    exec.getComputation().join();
+    exec.getOutputStream().release();
+    return exec;
+  }
+
+  @Benchmark
+  public Execution execute() {
+    Execution exec = executor.execute(script.getSource(), ExecPriority.NORMAL, null, ExecLimits.NONE,
+          1, TimeUnit.MINUTES).join();
+    exec.getOutputStream().release();
+    return exec;
+  }
+}
@@ -0,0 +1,79 @@
+package bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import impl.repositories.ExecJournal;
+import impl.repositories.ExecRepositoryImpl;
+import impl.repositories.entities.ExecState;
+import impl.repositories.entities.Execution;
+import impl.service.ExecEventLog;
+import impl.service.ExecStatus;
+import impl.service.ScriptExecServiceImpl;
+import impl.service.dto.ExecInfo;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rest.api.dto.StatusResp;
+
+// The GET /script/{id} path below the controller: read the buffered output, build the
+// response and serialize it with Jackson.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatusSerializationBenchmark {
+  @Param({"0", "1024", "65536", "1048576"})
+  public int outputBytes;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private ExecRepositoryImpl repo;
+  private ScriptExecServiceImpl service;
+  private String id;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    repo = new ExecRepositoryImpl(0L, 0L, 0L, 1000L, new ExecEventLog(1000, 1000, registry),
+          ExecJournal.NONE, registry);
+    service = new ScriptExecServiceImpl(repo, null);
+    OutputBuffer output = new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, outputBytes + 1, outputBytes + 1, null, null);
+    byte[] line = "console output line\n".getBytes(StandardCharsets.UTF_8);
+    byte[] content = new byte[outputBytes];
+    for (int i = 0; i < outputBytes; i++) {
+      content[i] = line[i % line.length];
+    }
+    output.write(content);
+    id = repo.addExecution(new Execution(
+          new ExecState(ExecStatus.DONE),
+          output,
+          CompletableFuture.completedFuture(null)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    repo.close();
+  }
+
+  @Benchmark
+  public byte[] status() throws IOException {
+    ExecInfo info = service.getExecutionStatus(id, 0);
+    return mapper.writeValueAsBytes(new StatusResp(
+          info.getStatus(),
+          info.getOutput(),
+          info.isTruncated(),
+          info.isSpilled(),
+          info.getOffset()));
+  }
+}
@@ -0,0 +1,18 @@
+package bench;
+
+// Script profiles shared by the benchmarks and the load harness.
+public enum Scripts {
+  TRIVIAL("1 + 1"),
+  CPU("let x = 0; for (let i = 0; i < 1000000; i++) { x = (x + i * 31) % 1000003 } x"),
+  OUTPUT("for (let i = 0; i < 10000; i++) { console.log('line ' + i) }");
+
+  private final String source;
+
+  Scripts(String source) {
+    this.source = source;
+  }
+
+  public String getSource() {
+    return source;
+  }
+}
@@ -0,0 +1,29 @@
+package bench.load;
+
+// The ExecutorRestApi operations the harness drives. Paths are relative to /executor/js.
+public enum Endpoint {
+  SUBMIT("POST", "/script?blocking=false"),
+  POLL("GET", "/script/{id}"),
+  CANCEL("PUT", "/script/{id}"),
+  DELETE("DELETE", "/script/{id}");
+
+  private final String method;
+  private final String path;
+
+  Endpoint(String method, String path) {
+    this.method = method;
+    this.path = path;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String key() {
+    return name().toLowerCase();
+  }
+}
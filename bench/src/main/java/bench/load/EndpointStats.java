@@ -0,0 +1,77 @@
+package bench.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+// Latency histogram and response counts of one endpoint. Latencies are kept in
+// microseconds with three significant digits.
+public class EndpointStats {
+  private final Endpoint endpoint;
+  private final Recorder latencies = new Recorder(3);
+  private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final LongAdder failures = new LongAdder();
+
+  public EndpointStats(Endpoint endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  public Endpoint getEndpoint() {
+    return endpoint;
+  }
+
+  public void record(long latencyNanos, int status) {
+    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+  }
+
+  // A request that got no response at all, e.g. a refused connection or a client timeout.
+  public void recordFailure(long latencyNanos) {
+    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    failures.increment();
+  }
+
+  public void reset() {
+    latencies.reset();
+    statuses.clear();
+    failures.reset();
+  }
+
+  // Status 404 on poll, cancel and delete is counted apart from the errors: with
+  // concurrent deletes and retention an id a worker picked may already be gone.
+  public Map<String, Object> summarize(double seconds) {
+    Histogram histogram = latencies.getIntervalHistogram();
+    Map<String, Long> byStatus = new TreeMap<>();
+    statuses.forEach((status, count) -> byStatus.put(String.valueOf(status), count.sum()));
+    long errors = failures.sum() + statuses.entrySet().stream()
+          .filter(entry -> entry.getKey() >= 400 && !(entry.getKey() == 404 && endpoint != Endpoint.SUBMIT))
+          .mapToLong(entry -> entry.getValue().sum())
+          .sum();
+    Map<String, Object> latency = new LinkedHashMap<>();
+    latency.put("p50", millis(histogram.getValueAtPercentile(50)));
+    latency.put("p95", millis(histogram.getValueAtPercentile(95)));
+    latency.put("p99", millis(histogram.getValueAtPercentile(99)));
+    latency.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+    latency.put("max", millis(histogram.getMaxValue()));
+    latency.put("mean", millis(histogram.getMean()));
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("method", endpoint.getMethod());
+    summary.put("path", "/executor/js" + endpoint.getPath());
+    summary.put("requests", histogram.getTotalCount());
+    summary.put("throughput", seconds > 0 ? histogram.getTotalCount() / seconds : 0);
+    summary.put("errors", errors);
+    summary.put("failures", failures.sum());
+    summary.put("statuses", byStatus);
+    summary.put("latencyMs", latency);
+    return summary;
+  }
+
+  private static double millis(double micros) {
+    return Math.round(micros) / 1000.0;
+  }
+}
@@ -0,0 +1,189 @@
+package bench.load;
+
+import bench.Scripts;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives the endpoints from a fixed number of worker threads. Without a rate every worker
+// sends its next request as soon as the previous one returns. With a rate each worker
+// follows a fixed schedule and latency is measured from the scheduled start, so a stalled
+// server is charged for the requests it held up instead of hiding them.
+public class LoadDriver {
+  private static final int KNOWN_IDS = 4096;
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+  private final LoadOptions options;
+  private final String baseUrl;
+  private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+  private final List<byte[]> submitBodies = new ArrayList<>();
+  private final Endpoint[] weighted;
+  private final AtomicReferenceArray<String> ids = new AtomicReferenceArray<>(KNOWN_IDS);
+  private final AtomicLong submitted = new AtomicLong();
+  private volatile boolean measuring;
+
+  public LoadDriver(LoadOptions options, int port) {
+    this.options = options;
+    this.baseUrl = "http://localhost:" + port + "/executor/js";
+    for (Endpoint endpoint : Endpoint.values()) {
+      stats.put(endpoint, new EndpointStats(endpoint));
+    }
+    for (Scripts profile : options.getProfiles()) {
+      try {
+        submitBodies.add(mapper.writeValueAsBytes(Map.of("script", profile.getSource())));
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+    List<Endpoint> endpoints = new ArrayList<>();
+    options.getMix().forEach((endpoint, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        endpoints.add(endpoint);
+      }
+    });
+    this.weighted = endpoints.toArray(new Endpoint[0]);
+  }
+
+  public Map<String, Object> run() throws InterruptedException {
+    long warmupEnd = System.nanoTime() + options.getWarmup().toNanos();
+    long end = warmupEnd + options.getDuration().toNanos();
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < options.getConcurrency(); i++) {
+      Thread worker = new Thread(() -> work(end), "load-worker-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    sleepUntil(warmupEnd);
+    stats.values().forEach(EndpointStats::reset);
+    measuring = true;
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    measuring = false;
+    double seconds = (System.nanoTime() - start) / 1e9;
+    Map<String, Object> endpoints = new LinkedHashMap<>();
+    long total = 0;
+    for (EndpointStats endpointStats : stats.values()) {
+      Map<String, Object> summary = endpointStats.summarize(seconds);
+      total += (Long) summary.get("requests");
+      endpoints.put(endpointStats.getEndpoint().key(), summary);
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("config", options.describe());
+    result.put("measuredSeconds", seconds);
+    result.put("requests", total);
+    result.put("throughput", total / seconds);
+    result.put("endpoints", endpoints);
+    return result;
+  }
+
+  private void work(long end) {
+    long interval = options.getRate() > 0
+          ? (long) (TimeUnit.SECONDS.toNanos(1) * options.getConcurrency() / options.getRate())
+          : 0;
+    long next = System.nanoTime();
+    while (next < end) {
+      long start;
+      if (interval > 0) {
+        sleepUntil(next);
+        start = next;
+        next += interval;
+      } else {
+        start = System.nanoTime();
+        next = start;
+      }
+      send(pick(), start);
+    }
+  }
+
+  private Endpoint pick() {
+    return weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+  }
+
+  private void send(Endpoint endpoint, long start) {
+    String id = null;
+    if (endpoint != Endpoint.SUBMIT) {
+      id = pickId(endpoint == Endpoint.DELETE);
+      if (id == null) {
+        endpoint = Endpoint.SUBMIT;
+      }
+    }
+    HttpRequest.Builder request = HttpRequest.newBuilder()
+          .uri(URI.create(baseUrl + endpoint.getPath().replace("{id}", id == null ? "" : id)))
+          .timeout(REQUEST_TIMEOUT);
+    switch (endpoint) {
+      case SUBMIT:
+        byte[] body = submitBodies.get(ThreadLocalRandom.current().nextInt(submitBodies.size()));
+        request.header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        break;
+      case POLL:
+        request.GET();
+        break;
+      case CANCEL:
+        request.PUT(HttpRequest.BodyPublishers.noBody());
+        break;
+      case DELETE:
+        request.DELETE();
+        break;
+    }
+    EndpointStats endpointStats = stats.get(endpoint);
+    boolean measured = measuring;
+    try {
+      HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+      long latency = System.nanoTime() - start;
+      if (measured) {
+        endpointStats.record(latency, response.statusCode());
+      }
+      if (endpoint == Endpoint.SUBMIT && response.statusCode() == 201) {
+        JsonNode created = mapper.readTree(response.body());
+        ids.set((int) (submitted.getAndIncrement() % KNOWN_IDS), created.get("id").asText());
+      }
+    } catch (IOException ex) {
+      if (measured) {
+        endpointStats.recordFailure(System.nanoTime() - start);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // A random id among the last submitted ones; a delete takes it out of the ring.
+  private String pickId(boolean remove) {
+    int known = (int) Math.min(submitted.get(), KNOWN_IDS);
+    if (known == 0) {
+      return null;
+    }
+    int slot = ThreadLocalRandom.current().nextInt(known);
+    return remove ? ids.getAndSet(slot, null) : ids.get(slot);
+  }
+
+  private static void sleepUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
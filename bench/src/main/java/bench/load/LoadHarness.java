@@ -0,0 +1,36 @@
+package bench.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import impl.App;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Boots the application on a random port, drives it with LoadDriver and writes the
+// summary as JSON to the --out file and to stdout. Run with ./gradlew :bench:loadTest.
+public class LoadHarness {
+  public static void main(String[] args) throws IOException, InterruptedException {
+    LoadOptions options = LoadOptions.parse(args);
+    List<String> appArgs = new ArrayList<>(List.of(
+          "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN"));
+    appArgs.addAll(options.getAppArgs());
+    Map<String, Object> summary;
+    try (ConfigurableApplicationContext app = SpringApplication.run(App.class, appArgs.toArray(new String[0]))) {
+      int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+      summary = new LoadDriver(options, port).run();
+    }
+    ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    Path out = Paths.get(options.getOut()).toAbsolutePath();
+    Files.createDirectories(out.getParent());
+    mapper.writeValue(out.toFile(), summary);
+    System.out.println(mapper.writeValueAsString(summary));
+  }
+}
@@ -0,0 +1,130 @@
+package bench.load;
+
+import bench.Scripts;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.convert.DurationStyle;
+
+// Harness options are given as --name=value; every other argument is passed on to the
+// application, e.g. --executor.thread-count=4. Later occurrences override earlier ones.
+public class LoadOptions {
+  private Duration duration = Duration.ofSeconds(30);
+  private Duration warmup = Duration.ofSeconds(5);
+  private int concurrency = 16;
+  private double rate;
+  private final Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+  private final List<Scripts> profiles = new ArrayList<>(List.of(Scripts.TRIVIAL));
+  private String out = "build/reports/load/summary.json";
+  private final List<String> appArgs = new ArrayList<>();
+
+  public static LoadOptions parse(String[] args) {
+    LoadOptions options = new LoadOptions();
+    options.setMix("submit=40,poll=40,cancel=10,delete=10");
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (!arg.startsWith("--") || eq < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      String value = arg.substring(eq + 1);
+      switch (arg.substring(2, eq)) {
+        case "duration":
+          options.duration = DurationStyle.detectAndParse(value, ChronoUnit.SECONDS);
+          break;
+        case "warmup":
+          options.warmup = DurationStyle.detectAndParse(value, ChronoUnit.SECONDS);
+          break;
+        case "concurrency":
+          options.concurrency = Integer.parseInt(value);
+          break;
+        case "rate":
+          options.rate = Double.parseDouble(value);
+          break;
+        case "mix":
+          options.setMix(value);
+          break;
+        case "profile":
+          options.profiles.clear();
+          for (String profile : value.split(",")) {
+            options.profiles.add(Scripts.valueOf(profile.trim().toUpperCase()));
+          }
+          break;
+        case "out":
+          options.out = value;
+          break;
+        default:
+          options.appArgs.add(arg);
+      }
+    }
+    if (options.concurrency <= 0 || options.mix.values().stream().allMatch(weight -> weight == 0)) {
+      throw new IllegalArgumentException("Concurrency and at least one mix weight must be positive");
+    }
+    return options;
+  }
+
+  // Weights by endpoint, e.g. submit=40,poll=40,cancel=10,delete=10; missing ones are 0.
+  private void setMix(String value) {
+    mix.clear();
+    for (Endpoint endpoint : Endpoint.values()) {
+      mix.put(endpoint, 0);
+    }
+    for (String entry : value.split(",")) {
+      String[] parts = entry.split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected endpoint=weight in the mix but got " + entry);
+      }
+      mix.put(Endpoint.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+    }
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public Duration getWarmup() {
+    return warmup;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  // Requests per second over all workers; 0 runs a closed loop.
+  public double getRate() {
+    return rate;
+  }
+
+  public Map<Endpoint, Integer> getMix() {
+    return mix;
+  }
+
+  public List<Scripts> getProfiles() {
+    return profiles;
+  }
+
+  public String getOut() {
+    return out;
+  }
+
+  public List<String> getAppArgs() {
+    return appArgs;
+  }
+
+  public Map<String, Object> describe() {
+    Map<String, Object> config = new LinkedHashMap<>();
+    config.put("durationSeconds", duration.toMillis() / 1000.0);
+    config.put("warmupSeconds", warmup.toMillis() / 1000.0);
+    config.put("concurrency", concurrency);
+    config.put("rate", rate);
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    mix.forEach((endpoint, weight) -> weights.put(endpoint.key(), weight));
+    config.put("mix", weights);
+    config.put("profiles", profiles);
+    config.put("appArgs", appArgs);
+    return config;
+  }
+}
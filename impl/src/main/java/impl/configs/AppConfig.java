@@ -1,6 +1,10 @@
 package impl.configs;
 
+import impl.repositories.ExecJournal;
+import java.util.Map;
+import org.graalvm.polyglot.Engine;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.CacheControl;
@@ -22,4 +26,18 @@ public class AppConfig {
       }
     };
   }
+
+  @Bean(destroyMethod = "close")
+  public Engine engine(@Value("#{${executor.engine.options:{:}}}") Map<String, String> options) {
+    return Engine.newBuilder()
+          .options(options)
+          .build();
+  }
+
+  // executor.repository.type=wal selects WalExecJournal instead.
+  @Bean
+  @ConditionalOnProperty(name = "executor.repository.type", havingValue = "memory", matchIfMissing = true)
+  public ExecJournal noJournal() {
+    return ExecJournal.NONE;
+  }
 }
@@ -1,13 +1,32 @@
 package impl.controllers;
 
+import impl.service.ExecEventStreamer;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
+import impl.service.OutputStreamer;
 import impl.service.ScriptExecService;
 import impl.service.dto.ExecInfo;
+import impl.service.dto.ExecSubmission;
+import impl.service.dto.IdPage;
+import impl.service.exceptions.BatchTooLargeException;
+import impl.service.exceptions.ExecTimeOutException;
+import impl.service.exceptions.InvalidTimeoutException;
+import impl.service.exceptions.InvalidWaitException;
+import impl.service.exceptions.UnknownIdException;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,15 +35,28 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import rest.api.ExecutorRestApi;
+import rest.api.doc.annotations.StreamExecEventsApiEndpoint;
+import rest.api.doc.annotations.StreamExecOutputApiEndpoint;
+import rest.api.doc.annotations.WaitForExecStatusApiEndpoint;
+import rest.api.dto.BatchExecResp;
 import rest.api.dto.BlockingExecResp;
 import rest.api.dto.ExecReq;
+import rest.api.dto.LimitsReq;
 import rest.api.dto.ScriptId;
 import rest.api.dto.ScriptListResp;
+import rest.api.dto.ScriptOutputResp;
+import rest.api.dto.ScriptStatusResp;
+import rest.api.dto.StatusBatchReq;
+import rest.api.dto.StatusBatchResp;
 import rest.api.dto.StatusResp;
 
 
@@ -36,13 +68,40 @@ import rest.api.dto.StatusResp;
 @ResponseBody
 @Tag(name = "JS executor")
 public class ExecutorController implements ExecutorRestApi {
+  private static final long ASYNC_TIMEOUT_MARGIN_MS = 1000;
+  private static final String TENANT_HEADER = "X-Tenant-Id";
+  private static final String WAIT_FOR_FINISHED = "finished";
   private final ScriptExecService service;
+  private final OutputStreamer streamer;
+  private final ExecEventStreamer eventStreamer;
   private final long execTimeout;
+  private final int defaultPageSize;
+  private final int maxPageSize;
+  private final int maxBatchSize;
+  private final long defaultWaitTimeout;
+  private final long maxWaitTimeout;
+  private final long maxExecTimeout;
 
   public ExecutorController(ScriptExecService service,
-                            @Value("${executor.blocking-timeout}") Long execTimeout) {
+                            OutputStreamer streamer,
+                            ExecEventStreamer eventStreamer,
+                            @Value("${executor.blocking-timeout}") Long execTimeout,
+                            @Value("${executor.script-list.default-limit:1000}") Integer defaultPageSize,
+                            @Value("${executor.script-list.max-limit:10000}") Integer maxPageSize,
+                            @Value("${executor.batch.max-size:10000}") Integer maxBatchSize,
+                            @Value("${executor.long-poll.default-timeout-ms:30000}") Long defaultWaitTimeout,
+                            @Value("${executor.long-poll.max-timeout-ms:60000}") Long maxWaitTimeout,
+                            @Value("${executor.timeout.max-ms:86400000}") Long maxExecTimeout) {
     this.service = service;
+    this.streamer = streamer;
+    this.eventStreamer = eventStreamer;
     this.execTimeout = execTimeout;
+    this.defaultPageSize = defaultPageSize;
+    this.maxPageSize = maxPageSize;
+    this.maxBatchSize = maxBatchSize;
+    this.defaultWaitTimeout = defaultWaitTimeout;
+    this.maxWaitTimeout = maxWaitTimeout;
+    this.maxExecTimeout = maxExecTimeout;
   }
 
   @PostMapping(
@@ -51,8 +110,32 @@ public class ExecutorController implements ExecutorRestApi {
         consumes = MediaType.APPLICATION_JSON_VALUE
   )
   @ResponseStatus(HttpStatus.CREATED)
-  public ScriptId executeScriptAsync(@RequestBody ExecReq body) {
-    return new ScriptId(service.executeScriptAsync(body.getScript()));
+  public ScriptId executeScriptAsync(@RequestBody ExecReq body,
+                                     @RequestHeader(name = TENANT_HEADER, required = false) String tenant) {
+    return new ScriptId(service.executeScriptAsync(body.getScript(),
+          ExecPriority.parse(body.getPriority()), tenantOf(tenant, body), limitsOf(body),
+          timeoutOf(body)));
+  }
+
+  @PostMapping(
+        path = "/scripts:batch",
+        consumes = MediaType.APPLICATION_JSON_VALUE
+  )
+  @ResponseStatus(HttpStatus.CREATED)
+  public BatchExecResp executeScriptBatch(@RequestBody List<ExecReq> body,
+                                          @RequestParam(name = "atomic", required = false, defaultValue = "false") Boolean atomic,
+                                          @RequestHeader(name = TENANT_HEADER, required = false) String tenant) {
+    if (body.size() > maxBatchSize) {
+      throw new BatchTooLargeException(body.size(), maxBatchSize);
+    }
+    List<ExecSubmission> submissions = body.stream()
+          .map(req -> new ExecSubmission(req.getScript(), ExecPriority.parse(req.getPriority()),
+                tenantOf(tenant, req), limitsOf(req), timeoutOf(req)))
+          .collect(Collectors.toList());
+    List<String> ids = service.executeScriptsAsync(submissions, atomic);
+    return new BatchExecResp(
+          ids.stream().map(id -> id == null ? null : new ScriptId(id)).collect(Collectors.toList()),
+          (int) ids.stream().filter(Objects::isNull).count());
   }
 
   @PostMapping(
@@ -61,16 +144,109 @@ public class ExecutorController implements ExecutorRestApi {
         consumes = MediaType.APPLICATION_JSON_VALUE
   )
   @ResponseStatus(HttpStatus.OK)
-  public BlockingExecResp executeScriptWithBlocking(@RequestBody ExecReq body) {
-    ExecInfo res = service.executeScript(body.getScript(), execTimeout, TimeUnit.MINUTES);
-    return new BlockingExecResp(res.getStatus(), res.getOutput());
+  public DeferredResult<BlockingExecResp> executeScriptWithBlocking(@RequestBody ExecReq body,
+                                                                    @RequestHeader(name = TENANT_HEADER, required = false) String tenant) {
+    DeferredResult<BlockingExecResp> result =
+          new DeferredResult<>(TimeUnit.MINUTES.toMillis(execTimeout) + ASYNC_TIMEOUT_MARGIN_MS);
+    result.onTimeout(() ->
+          result.setErrorResult(new ExecTimeOutException(execTimeout, TimeUnit.MINUTES)));
+    service.executeScript(body.getScript(), ExecPriority.parse(body.getPriority()),
+                tenantOf(tenant, body), limitsOf(body), execTimeout, TimeUnit.MINUTES)
+          .whenComplete((res, ex) -> {
+            if (ex == null) {
+              result.setResult(new BlockingExecResp(res.getStatus(), res.getOutput()));
+            } else {
+              result.setErrorResult(ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+          });
+    return result;
   }
 
   @GetMapping("/script/{id}")
   @ResponseStatus(HttpStatus.OK)
-  public StatusResp getExecutionStatus(@PathVariable(name = "id") String scriptId) {
-    ExecInfo info = service.getExecutionStatus(scriptId);
-    return new StatusResp(info.getStatus(), info.getOutput());
+  public StatusResp getExecutionStatus(@PathVariable(name = "id") String scriptId,
+                                       @RequestParam(name = "offset", defaultValue = "0") Long offset) {
+    return getStatusResp(service.getExecutionStatus(scriptId, offset));
+  }
+
+  // The timeout is capped at executor.long-poll.max-timeout-ms; a plain number is in seconds.
+  @GetMapping(
+        path = "/script/{id}",
+        params = "waitFor"
+  )
+  @ResponseStatus(HttpStatus.OK)
+  @WaitForExecStatusApiEndpoint
+  public DeferredResult<StatusResp> waitForExecutionStatus(@PathVariable(name = "id") String scriptId,
+                                                           @RequestParam(name = "waitFor") String waitFor,
+                                                           @RequestParam(name = "timeout", required = false) String timeout,
+                                                           @RequestParam(name = "offset", defaultValue = "0") Long offset) {
+    if (!WAIT_FOR_FINISHED.equals(waitFor)) {
+      throw new InvalidWaitException("waitFor", waitFor);
+    }
+    long timeoutMs = Math.min(waitTimeoutOf(timeout), maxWaitTimeout);
+    DeferredResult<StatusResp> result = new DeferredResult<>(timeoutMs + ASYNC_TIMEOUT_MARGIN_MS);
+    service.waitForExecutionStatus(scriptId, offset, timeoutMs, TimeUnit.MILLISECONDS)
+          .whenComplete((info, ex) -> {
+            if (ex == null) {
+              result.setResult(getStatusResp(info));
+            } else {
+              result.setErrorResult(ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+          });
+    return result;
+  }
+
+  @PostMapping(
+        path = "/scripts:status",
+        consumes = MediaType.APPLICATION_JSON_VALUE
+  )
+  @ResponseStatus(HttpStatus.OK)
+  public StatusBatchResp getExecutionStatuses(@RequestBody StatusBatchReq body,
+                                              @RequestParam(name = "output", defaultValue = "false") Boolean output) {
+    List<String> ids = Optional.ofNullable(body.getIds()).orElse(List.of());
+    if (ids.size() > maxBatchSize) {
+      throw new BatchTooLargeException(ids.size(), maxBatchSize);
+    }
+    List<Optional<ExecInfo>> infos = service.getExecutionStatuses(ids, output);
+    List<ScriptStatusResp> entries = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      String id = ids.get(i);
+      entries.add(infos.get(i)
+            .map(info -> output
+                  ? new ScriptOutputResp(id, info.getStatus(), info.getOutput(),
+                        info.isTruncated(), info.isSpilled(), info.getOffset())
+                  : new ScriptStatusResp(id, info.getStatus(), null))
+            .orElseGet(() -> new ScriptStatusResp(id, null, UnknownIdException.generateMessage(id))));
+    }
+    return new StatusBatchResp(entries);
+  }
+
+  @GetMapping(
+        path = "/script/{id}/output",
+        produces = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE}
+  )
+  @ResponseStatus(HttpStatus.OK)
+  public Resource getExecutionOutput(@PathVariable(name = "id") String scriptId) {
+    return service.getExecutionOutput(scriptId);
+  }
+
+  @GetMapping(
+        path = "/script/{id}/output/stream",
+        produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE}
+  )
+  @StreamExecOutputApiEndpoint
+  public SseEmitter streamExecutionOutput(@PathVariable(name = "id") String scriptId,
+                                          @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+    return streamer.subscribe(scriptId, lastEventId == null ? 0 : lastEventId);
+  }
+
+  @GetMapping(
+        path = "/script-events",
+        produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_JSON_VALUE}
+  )
+  @StreamExecEventsApiEndpoint
+  public SseEmitter streamExecutionEvents(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+    return eventStreamer.subscribe(lastEventId);
   }
 
   @PutMapping("/script/{id}")
@@ -87,20 +263,75 @@ public class ExecutorController implements ExecutorRestApi {
 
   @GetMapping("/script-list/finished")
   @ResponseStatus(HttpStatus.OK)
-  public ScriptListResp getFinishedExecutions() {
-    return getScriptListResp(service.getFinishedExecutionIds());
+  public ScriptListResp getFinishedExecutions(@RequestParam(name = "limit", required = false) Integer limit,
+                                              @RequestParam(name = "cursor", required = false) String cursor) {
+    return getScriptListResp(service.getFinishedExecutionIds(cursor, pageSize(limit)));
   }
 
   @GetMapping("/script-list")
   @ResponseStatus(HttpStatus.OK)
-  public ScriptListResp getAllExecutions() {
-    return getScriptListResp(service.getAllExecutionIds());
+  public ScriptListResp getAllExecutions(@RequestParam(name = "limit", required = false) Integer limit,
+                                         @RequestParam(name = "cursor", required = false) String cursor) {
+    return getScriptListResp(service.getAllExecutionIds(cursor, pageSize(limit)));
+  }
+
+  private String tenantOf(String header, ExecReq body) {
+    return header != null ? header : body.getTenant();
+  }
+
+  private ExecLimits limitsOf(ExecReq body) {
+    LimitsReq limits = body.getLimits();
+    if (limits == null) {
+      return ExecLimits.NONE;
+    }
+    return new ExecLimits(
+          Optional.ofNullable(limits.getStatements()).orElse(0L),
+          Optional.ofNullable(limits.getCpuTimeMs()).orElse(0L),
+          Optional.ofNullable(limits.getAllocatedBytes()).orElse(0L));
+  }
+
+  // 0 leaves the server default in place; anything longer than the cap is refused rather than
+  // silently shortened.
+  private long timeoutOf(ExecReq req) {
+    long timeoutMs = Optional.ofNullable(req.getTimeoutMs()).orElse(0L);
+    if (timeoutMs < 0 || timeoutMs > maxExecTimeout) {
+      throw new InvalidTimeoutException(timeoutMs, maxExecTimeout);
+    }
+    return timeoutMs;
+  }
+
+  private long waitTimeoutOf(String timeout) {
+    if (timeout == null) {
+      return defaultWaitTimeout;
+    }
+    try {
+      Duration duration = DurationStyle.detectAndParse(timeout, ChronoUnit.SECONDS);
+      if (duration.isNegative()) {
+        throw new InvalidWaitException("timeout", timeout);
+      }
+      return duration.toMillis();
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidWaitException("timeout", timeout);
+    }
+  }
+
+  private StatusResp getStatusResp(ExecInfo info) {
+    return new StatusResp(
+          info.getStatus(),
+          info.getOutput(),
+          info.isTruncated(),
+          info.isSpilled(),
+          info.getOffset());
+  }
+
+  private int pageSize(Integer limit) {
+    return limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
   }
 
-  private ScriptListResp getScriptListResp(List<String> scriptList) {
-    return new ScriptListResp(scriptList.stream()
+  private ScriptListResp getScriptListResp(IdPage page) {
+    return new ScriptListResp(page.getIds().stream()
           .map(ScriptId::new)
-          .collect(Collectors.toList()));
+          .collect(Collectors.toList()), page.getNextCursor());
   }
 
 }
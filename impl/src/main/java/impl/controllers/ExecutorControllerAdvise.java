@@ -1,11 +1,19 @@
 package impl.controllers;
 
+import impl.service.exceptions.BatchTooLargeException;
 import impl.service.exceptions.DeletionException;
 import impl.service.exceptions.ExecTimeOutException;
+import impl.service.exceptions.InvalidCursorException;
+import impl.service.exceptions.InvalidTimeoutException;
+import impl.service.exceptions.InvalidWaitException;
+import impl.service.exceptions.QueueFullException;
 import impl.service.exceptions.UnknownIdException;
+import impl.service.exceptions.UnknownPriorityException;
 import io.swagger.v3.oas.annotations.Hidden;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -36,6 +44,43 @@ public class ExecutorControllerAdvise {
     return new ErrorResp(ex.getMessage());
   }
 
+  @ExceptionHandler(QueueFullException.class)
+  public ResponseEntity<ErrorResp> response(QueueFullException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()))
+          .body(new ErrorResp(ex.getMessage()));
+  }
+
+  @ExceptionHandler(UnknownPriorityException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ErrorResp response(UnknownPriorityException ex) {
+    return new ErrorResp(ex.getMessage());
+  }
+
+  @ExceptionHandler(InvalidCursorException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ErrorResp response(InvalidCursorException ex) {
+    return new ErrorResp(ex.getMessage());
+  }
+
+  @ExceptionHandler(InvalidTimeoutException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ErrorResp response(InvalidTimeoutException ex) {
+    return new ErrorResp(ex.getMessage());
+  }
+
+  @ExceptionHandler(InvalidWaitException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ErrorResp response(InvalidWaitException ex) {
+    return new ErrorResp(ex.getMessage());
+  }
+
+  @ExceptionHandler(BatchTooLargeException.class)
+  @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+  public ErrorResp response(BatchTooLargeException ex) {
+    return new ErrorResp(ex.getMessage());
+  }
+
   @ExceptionHandler(Exception.class)
   @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
   public ErrorResp response(Exception ex) {
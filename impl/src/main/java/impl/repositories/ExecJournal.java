@@ -0,0 +1,31 @@
+package impl.repositories;
+
+import impl.repositories.entities.Execution;
+import impl.repositories.entities.RecoveredExec;
+import java.util.List;
+
+// Durable record of the executions a repository holds: each one is recorded when it is added,
+// when it starts and when it finishes, and forgotten when it is removed. NONE keeps nothing,
+// which leaves the repository purely in memory.
+public interface ExecJournal {
+  ExecJournal NONE = new ExecJournal() { };
+
+  // Returns once the submissions are durable.
+  default void submitted(List<String> ids, List<Execution> executions) {
+  }
+
+  default void started(String id) {
+  }
+
+  default void finished(String id, Execution execution) {
+  }
+
+  default void removed(String id) {
+  }
+
+  // What the previous process left, in the order it was submitted: finished executions,
+  // and queued ones to run again. Those it left running are recovered as INTERRUPTED.
+  default List<RecoveredExec> recover() {
+    return List.of();
+  }
+}
@@ -1,16 +1,30 @@
 package impl.repositories;
 
 import impl.repositories.entities.Execution;
+import impl.service.ExecStatus;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
-import java.util.Set;
 
 public interface ExecRepository {
 
   String addExecution(Execution execution);
 
+  List<String> addExecutions(List<Execution> executions);
+
+  // Puts back an execution recovered after a restart under the id it had before.
+  void restoreExecution(String execId, Execution execution);
+
   Optional<Execution> getExecution(String execId);
 
   void removeExecution(String execId);
 
-  Set<String> getAllIds();
+  NavigableSet<String> getAllIds();
+
+  NavigableSet<String> getIdsByStatus(ExecStatus status);
+
+  // Ids of finished executions keyed by when they finished: one that finishes later always
+  // gets a higher key, whenever it was submitted.
+  NavigableMap<Long, String> getFinishedIds();
 }
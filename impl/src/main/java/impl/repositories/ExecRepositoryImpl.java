@@ -1,23 +1,123 @@
 package impl.repositories;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import impl.repositories.entities.Execution;
+import impl.service.ExecEventLog;
+import impl.service.ExecStatus;
 import impl.service.exceptions.UnknownIdException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 public class ExecRepositoryImpl implements ExecRepository {
-  private final Map<String, Execution> map = new ConcurrentHashMap<>();
+  private final ConcurrentNavigableMap<String, Execution> map = new ConcurrentSkipListMap<>();
+  private final Map<String, ExecStatus> indexed = new ConcurrentHashMap<>();
+  private final Map<String, Integer> published = new ConcurrentHashMap<>();  // statuses published per id
+  private final Map<ExecStatus, NavigableSet<String>> byStatus = new EnumMap<>(ExecStatus.class);
+  private final Object idLock = new Object();
+  private long lastIdPrefix;
+  private final LinkedHashMap<String, FinishedExec> finished = new LinkedHashMap<>();  // in finish order
+  private final ConcurrentNavigableMap<Long, String> finishOrder = new ConcurrentSkipListMap<>();
+  private long lastFinishKey;
+  private final long maxAge;
+  private final long maxFinished;
+  private final long maxOutputBytes;
+  private final ExecEventLog events;
+  private final ExecJournal journal;
+  private final ScheduledExecutorService sweeper;
+  private final Counter evictedByAge;
+  private final Counter evictedByCount;
+  private final Counter evictedByBytes;
+  private long retainedBytes;
+
+  public ExecRepositoryImpl(@Value("${executor.retention.max-age-ms:0}") Long maxAge,
+                            @Value("${executor.retention.max-finished:0}") Long maxFinished,
+                            @Value("${executor.retention.max-output-bytes:0}") Long maxOutputBytes,
+                            @Value("${executor.retention.sweep-interval-ms:1000}") Long sweepInterval,
+                            ExecEventLog events,
+                            ExecJournal journal,
+                            MeterRegistry registry) {
+    for (ExecStatus status : ExecStatus.values()) {
+      byStatus.put(status, new ConcurrentSkipListSet<>());
+    }
+    this.maxAge = maxAge;
+    this.maxFinished = maxFinished;
+    this.maxOutputBytes = maxOutputBytes;
+    this.events = events;
+    this.journal = journal;
+    this.evictedByAge = registry.counter("executor.executions.evicted", "reason", "age");
+    this.evictedByCount = registry.counter("executor.executions.evicted", "reason", "count");
+    this.evictedByBytes = registry.counter("executor.executions.evicted", "reason", "bytes");
+    registry.gauge("executor.executions.retained.finished", this, ExecRepositoryImpl::getFinishedCount);
+    registry.gauge("executor.executions.retained.bytes", this, ExecRepositoryImpl::getRetainedBytes);
+    registry.gauge("executor.output.retained.bytes", this, ExecRepositoryImpl::getTotalOutputBytes);
+    this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("exec-sweeper")
+          .setDaemon(true)
+          .build());
+    sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+  }
 
   @Override
   public String addExecution(Execution execution) {
-    String id = UUID.randomUUID().toString();
-    map.put(id, execution);
-    return id;
+    return addExecutions(List.of(execution)).get(0);
+  }
+
+  // Ids of one call are allocated under a single lock hold, so they are consecutive.
+  @Override
+  public List<String> addExecutions(List<Execution> executions) {
+    List<String> ids = new ArrayList<>(executions.size());
+    synchronized (idLock) {
+      for (Execution execution : executions) {
+        String id = nextId();
+        map.put(id, execution);
+        ids.add(id);
+      }
+    }
+    try {
+      journal.submitted(ids, executions);
+    } catch (RuntimeException ex) {
+      ids.forEach(map::remove);
+      throw ex;
+    }
+    for (int i = 0; i < ids.size(); i++) {
+      track(ids.get(i), executions.get(i), true);
+    }
+    return ids;
+  }
+
+  // An execution restored already finished is in the journal as it is, so only one that
+  // finishes later is journaled again.
+  @Override
+  public void restoreExecution(String execId, Execution execution) {
+    synchronized (idLock) {
+      lastIdPrefix = Math.max(lastIdPrefix, UUID.fromString(execId).getMostSignificantBits());
+      map.put(execId, execution);
+    }
+    track(execId, execution, !execution.getComputation().isDone());
   }
 
   @Override
@@ -27,11 +127,180 @@ public class ExecRepositoryImpl implements ExecRepository {
 
   @Override
   public void removeExecution(String execId) {
-    Optional.ofNullable(map.remove(execId)).orElseThrow(() -> new UnknownIdException(execId));
+    Execution exec = Optional.ofNullable(map.remove(execId))
+          .orElseThrow(() -> new UnknownIdException(execId));
+    reindex(execId, exec);
+    publishDeleted(execId, exec);
+    journal.removed(execId);
+    synchronized (finished) {
+      FinishedExec entry = finished.remove(execId);
+      if (entry != null) {
+        finishOrder.remove(entry.finishKey);
+        retainedBytes -= entry.outputBytes;
+      }
+    }
+    exec.getOutputStream().release();
+  }
+
+  @Override
+  public NavigableSet<String> getAllIds() {
+    return Collections.unmodifiableNavigableSet(map.keySet());
   }
 
   @Override
-  public Set<String> getAllIds() {
-    return map.keySet();
+  public NavigableSet<String> getIdsByStatus(ExecStatus status) {
+    return Collections.unmodifiableNavigableSet(byStatus.get(status));
+  }
+
+  @Override
+  public NavigableMap<Long, String> getFinishedIds() {
+    return Collections.unmodifiableNavigableMap(finishOrder);
+  }
+
+  public long getFinishedCount() {
+    synchronized (finished) {
+      return finished.size();
+    }
+  }
+
+  public long getRetainedBytes() {
+    synchronized (finished) {
+      return retainedBytes;
+    }
+  }
+
+  // Output held by finished executions plus what running ones have written so far.
+  public long getTotalOutputBytes() {
+    long running = 0;
+    for (String id : byStatus.get(ExecStatus.RUNNING)) {
+      Execution exec = map.get(id);
+      if (exec != null) {
+        running += exec.getOutputStream().size();
+      }
+    }
+    return getRetainedBytes() + running;
+  }
+
+  // Evicts the oldest finished executions while any retention limit is exceeded.
+  // Queued and running executions are never tracked here, so they are never evicted.
+  public void sweep() {
+    long now = System.currentTimeMillis();
+    synchronized (finished) {
+      Iterator<Map.Entry<String, FinishedExec>> it = finished.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, FinishedExec> entry = it.next();
+        FinishedExec exec = entry.getValue();
+        Counter reason;
+        if (maxAge > 0 && now - exec.finishedAt > maxAge) {
+          reason = evictedByAge;
+        } else if (maxFinished > 0 && finished.size() > maxFinished) {
+          reason = evictedByCount;
+        } else if (maxOutputBytes > 0 && retainedBytes > maxOutputBytes) {
+          reason = evictedByBytes;
+        } else {
+          break;
+        }
+        it.remove();
+        finishOrder.remove(exec.finishKey);
+        retainedBytes -= exec.outputBytes;
+        if (map.remove(entry.getKey(), exec.execution)) {
+          reindex(entry.getKey(), exec.execution);
+          publishDeleted(entry.getKey(), exec.execution);
+          journal.removed(entry.getKey());
+          exec.execution.getOutputStream().release();
+          reason.increment();
+        }
+      }
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    sweeper.shutdownNow();
+  }
+
+  // Ids sort in the order they were handed out: the high half is a strictly increasing
+  // millisecond timestamp shifted left by 16 bits, the low half is random. Allocation and
+  // publication happen under one lock, so a listing never sees an id appear behind a later one.
+  private String nextId() {
+    lastIdPrefix = Math.max(lastIdPrefix + 1, System.currentTimeMillis() << 16);
+    return new UUID(lastIdPrefix, ThreadLocalRandom.current().nextLong()).toString();
+  }
+
+  // Moves the id to the set of the execution's current status, or drops it once the execution
+  // is removed. Every call re-reads the status, so racing notifications converge on the latest one.
+  private void reindex(String id, Execution execution) {
+    indexed.compute(id, (key, indexedStatus) -> {
+      ExecStatus status = map.get(id) == execution ? execution.getStatus().get() : null;
+      if (indexedStatus != status) {
+        if (indexedStatus != null) {
+          byStatus.get(indexedStatus).remove(id);
+        }
+        if (status != null) {
+          byStatus.get(status).add(id);
+        }
+      }
+      return status;
+    });
+  }
+
+  private void track(String id, Execution execution, boolean journalFinish) {
+    execution.getStatus().onChange(() -> onChange(id, execution));
+    onChange(id, execution);
+    execution.getComputation().whenComplete((res, ex) -> onFinished(id, execution, journalFinish));
+  }
+
+  private void onChange(String id, Execution execution) {
+    reindex(id, execution);
+    published.compute(id, (key, count) ->
+          map.get(id) == execution ? publish(id, execution, count) : null);
+  }
+
+  // The history catches up on transitions made before the listener was attached or while
+  // another notification was being handled, so each one is published once and in order.
+  private Integer publish(String id, Execution execution, Integer count) {
+    List<ExecStatus> history = execution.getStatus().getHistory();
+    for (int i = count == null ? 0 : count; i < history.size(); i++) {
+      events.publish(id, history.get(i));
+      if (history.get(i) == ExecStatus.RUNNING) {
+        journal.started(id);
+      }
+    }
+    return history.size();
+  }
+
+  private void publishDeleted(String id, Execution execution) {
+    published.compute(id, (key, count) -> {
+      publish(id, execution, count);
+      events.publish(id, ExecEventLog.DELETED);
+      return null;
+    });
+  }
+
+  private void onFinished(String id, Execution execution, boolean journalFinish) {
+    synchronized (finished) {
+      if (map.get(id) != execution) {
+        return;
+      }
+      long outputBytes = execution.getOutputStream().size();
+      long now = System.currentTimeMillis();
+      lastFinishKey = Math.max(lastFinishKey + 1, now << 16);
+      finished.put(id, new FinishedExec(execution, now, outputBytes, lastFinishKey));
+      finishOrder.put(lastFinishKey, id);
+      retainedBytes += outputBytes;
+    }
+    if (journalFinish) {
+      journal.finished(id, execution);
+    }
+    execution.dropSubmission();
+    execution.getOutputStream().archive();
+  }
+
+  @AllArgsConstructor
+  private static class FinishedExec {
+    private final Execution execution;
+    private final long finishedAt;
+    private final long outputBytes;
+    private final long finishKey;
   }
 }
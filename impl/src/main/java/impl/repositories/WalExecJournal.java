@@ -0,0 +1,451 @@
+package impl.repositories;
+
+import impl.repositories.entities.Execution;
+import impl.repositories.entities.RecoveredExec;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
+import impl.service.ExecStatus;
+import impl.service.dto.ExecSubmission;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Write-ahead log in one append-only file. A record is its length, a CRC32 of the body and
+// the body: a type byte and the fields of that type. One writer thread appends whatever has
+// queued up while it was busy with a single write and a single fsync, so concurrent
+// submissions share the cost of a sync (group commit). The writer also keeps the offsets of
+// the records of executions still held; once the file outgrows twice their size it copies
+// them to a new file that replaces the old one.
+//
+// On startup the file is read up to the first record that is torn or fails its checksum,
+// and cut there. Executions that were running get a record that they finished INTERRUPTED.
+@Component
+@ConditionalOnProperty(name = "executor.repository.type", havingValue = "wal")
+@Slf4j
+public class WalExecJournal implements ExecJournal {
+  static final String FILE_NAME = "executions.wal";
+  private static final byte SUBMIT = 1;
+  private static final byte START = 2;
+  private static final byte FINISH = 3;
+  private static final byte REMOVE = 4;
+  private static final int HEADER_BYTES = 8;
+  private static final int MAX_BATCH_BYTES = 4 << 20;
+  private static final Append STOP = new Append(null, (byte) 0, null, null);
+
+  private final Path file;
+  private final boolean fsync;
+  private final long compactBytes;
+  private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+  private final Map<String, List<long[]>> live = new LinkedHashMap<>();  // writer thread only
+  private final Thread writer;
+  private FileChannel channel;
+  private long liveBytes;
+  private List<RecoveredExec> recovered;
+  private volatile boolean closed;
+
+  public WalExecJournal(@Value("${executor.repository.wal.dir:wal}") String dir,
+                        @Value("${executor.repository.wal.fsync:true}") Boolean fsync,
+                        @Value("${executor.repository.wal.compact-bytes:67108864}") Long compactBytes)
+        throws IOException {
+    this.file = Paths.get(dir).resolve(FILE_NAME);
+    this.fsync = fsync;
+    this.compactBytes = compactBytes;
+    Files.createDirectories(file.getParent());
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+    this.recovered = replay();
+    this.writer = new Thread(this::writeLoop, "exec-wal-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void submitted(List<String> ids, List<Execution> executions) {
+    List<CompletableFuture<Void>> written = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      written.add(append(ids.get(i), SUBMIT, encodeSubmit(ids.get(i), executions.get(i).getSubmission())));
+    }
+    try {
+      written.forEach(CompletableFuture::join);
+    } catch (CompletionException ex) {
+      throw ex.getCause() instanceof IOException
+            ? new UncheckedIOException((IOException) ex.getCause())
+            : ex;
+    }
+  }
+
+  @Override
+  public void started(String id) {
+    append(id, START, encodeId(START, id));
+  }
+
+  @Override
+  public void finished(String id, Execution execution) {
+    append(id, FINISH, encodeFinish(id, execution.getStatus().get(), execution.getOutputStream().toByteArray()));
+  }
+
+  @Override
+  public void removed(String id) {
+    append(id, REMOVE, encodeId(REMOVE, id));
+  }
+
+  // Handed out once; the journal keeps no copy of the recovered output.
+  @Override
+  public synchronized List<RecoveredExec> recover() {
+    List<RecoveredExec> res = recovered;
+    recovered = List.of();
+    return res;
+  }
+
+  // Appends queued before the call are still written.
+  @PreDestroy
+  public void close() throws InterruptedException, IOException {
+    synchronized (appends) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      appends.add(STOP);
+    }
+    writer.join();
+    channel.close();
+  }
+
+  private CompletableFuture<Void> append(String id, byte type, byte[] body) {
+    Append append = new Append(id, type, frame(body), new CompletableFuture<>());
+    synchronized (appends) {
+      if (closed) {
+        append.written.completeExceptionally(new IOException("Journal is closed"));
+      } else {
+        appends.add(append);
+      }
+    }
+    return append.written;
+  }
+
+  private void writeLoop() {
+    List<Append> batch = new ArrayList<>();
+    boolean stop = false;
+    while (!stop) {
+      try {
+        batch.add(appends.take());
+      } catch (InterruptedException ex) {
+        return;
+      }
+      long bytes = 0;
+      Append next;
+      while (bytes < MAX_BATCH_BYTES && (next = appends.poll()) != null) {
+        batch.add(next);
+        bytes += next == STOP ? 0 : next.frame.remaining();
+      }
+      stop = batch.remove(STOP);
+      if (!batch.isEmpty()) {
+        write(batch);
+      }
+      batch.clear();
+    }
+  }
+
+  // A batch that fails is cut off again, so the next one does not land behind a torn record.
+  private void write(List<Append> batch) {
+    long start = -1;
+    try {
+      start = channel.size();
+      ByteBuffer[] frames = new ByteBuffer[batch.size()];
+      int[] lengths = new int[batch.size()];
+      for (int i = 0; i < batch.size(); i++) {
+        frames[i] = batch.get(i).frame;
+        lengths[i] = frames[i].remaining();
+      }
+      channel.position(start);
+      while (frames[frames.length - 1].hasRemaining()) {
+        channel.write(frames);
+      }
+      if (fsync) {
+        channel.force(false);
+      }
+      long position = start;
+      for (int i = 0; i < batch.size(); i++) {
+        index(batch.get(i).id, batch.get(i).type, position, lengths[i]);
+        position += lengths[i];
+      }
+    } catch (IOException ex) {
+      log.error("Failed to write to {}", file, ex);
+      batch.forEach(append -> append.written.completeExceptionally(ex));
+      truncate(start);
+      return;
+    }
+    batch.forEach(append -> append.written.complete(null));
+    try {
+      if (channel.size() > compactBytes && channel.size() > 2 * liveBytes) {
+        compact();
+      }
+    } catch (IOException ex) {
+      log.error("Failed to compact {}", file, ex);
+    }
+  }
+
+  private void truncate(long size) {
+    try {
+      if (size >= 0 && channel.size() > size) {
+        channel.truncate(size);
+      }
+    } catch (IOException ex) {
+      log.error("Failed to truncate {} to {} bytes", file, size, ex);
+    }
+  }
+
+  // Records of an execution stay until it is removed; the removal itself is not kept.
+  private void index(String id, byte type, long position, int length) {
+    List<long[]> records = live.get(id);
+    if (type == REMOVE) {
+      if (records != null) {
+        live.remove(id);
+        records.forEach(record -> liveBytes -= record[1]);
+      }
+      return;
+    }
+    if (records == null) {
+      if (type != SUBMIT) {
+        return;  // the execution was already removed
+      }
+      records = new ArrayList<>(3);
+      live.put(id, records);
+    }
+    records.add(new long[] {position, length});
+    liveBytes += length;
+  }
+
+  private void compact() throws IOException {
+    Path tmp = file.resolveSibling(FILE_NAME + ".compact");
+    List<long[]> records = new ArrayList<>();
+    live.values().forEach(records::addAll);
+    records.sort((a, b) -> Long.compare(a[0], b[0]));
+    long[] moved = new long[records.size()];
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      long position = 0;
+      for (int i = 0; i < records.size(); i++) {
+        long[] record = records.get(i);
+        long copied = 0;
+        while (copied < record[1]) {
+          copied += channel.transferTo(record[0] + copied, record[1] - copied, out);
+        }
+        moved[i] = position;
+        position += record[1];
+      }
+      out.force(false);
+    }
+    long before = channel.size();
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel.close();
+    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    for (int i = 0; i < records.size(); i++) {
+      records.get(i)[0] = moved[i];
+    }
+    log.info("Compacted {} from {} to {} bytes", file, before, channel.size());
+  }
+
+  // Runs before the writer starts, so the offsets it indexes are final.
+  private List<RecoveredExec> replay() throws IOException {
+    Map<String, Recovering> execs = new LinkedHashMap<>();
+    long position = 0;
+    DataInputStream data = new DataInputStream(
+          new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+    while (true) {
+      byte[] body;
+      try {
+        int length = data.readInt();
+        int crc = data.readInt();
+        if (length <= 0 || position + HEADER_BYTES + length > channel.size()) {
+          break;
+        }
+        body = new byte[length];
+        data.readFully(body);
+        if (crc != checksum(body)) {
+          break;
+        }
+      } catch (EOFException ex) {
+        break;
+      }
+      apply(execs, body, position);
+      position += HEADER_BYTES + body.length;
+    }
+    if (position < channel.size()) {
+      log.warn("Discarding {} bytes after the last complete record of {}", channel.size() - position, file);
+      channel.truncate(position);
+    }
+    channel.position(position);
+
+    List<RecoveredExec> res = new ArrayList<>(execs.size());
+    for (Map.Entry<String, Recovering> entry : execs.entrySet()) {
+      String id = entry.getKey();
+      Recovering exec = entry.getValue();
+      if (exec.status == ExecStatus.RUNNING || exec.status == ExecStatus.QUEUE && exec.submission == null) {
+        exec.status = ExecStatus.INTERRUPTED;
+        byte[] frame = frame(encodeFinish(id, exec.status, exec.output)).array();
+        index(id, FINISH, position, frame.length);
+        channel.write(ByteBuffer.wrap(frame), position);
+        position += frame.length;
+      }
+      res.add(new RecoveredExec(id, exec.submission, exec.status, exec.output));
+    }
+    channel.force(false);
+    return res;
+  }
+
+  private void apply(Map<String, Recovering> execs, byte[] body, long position) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte type = in.readByte();
+    String id = in.readUTF();
+    index(id, type, position, HEADER_BYTES + body.length);
+    Recovering exec = execs.get(id);
+    switch (type) {
+      case SUBMIT:
+        execs.put(id, new Recovering(in.readBoolean() ? readSubmission(in) : null));
+        break;
+      case START:
+        if (exec != null && exec.status == ExecStatus.QUEUE) {
+          exec.status = ExecStatus.RUNNING;
+        }
+        break;
+      case FINISH:
+        if (exec != null) {
+          exec.status = ExecStatus.valueOf(in.readUTF());
+          exec.output = new byte[in.readInt()];
+          in.readFully(exec.output);
+        }
+        break;
+      case REMOVE:
+        execs.remove(id);
+        break;
+      default:
+        throw new IOException("Unknown record type " + type + " in " + file);
+    }
+  }
+
+  private static byte[] encodeId(byte type, String id) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(type);
+      out.writeUTF(id);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] encodeSubmit(String id, ExecSubmission sub) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(SUBMIT);
+      out.writeUTF(id);
+      out.writeBoolean(sub != null);
+      if (sub != null) {
+        byte[] script = sub.getScript().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(script.length);
+        out.write(script);
+        out.writeUTF(sub.getPriority().name());
+        out.writeBoolean(sub.getTenant() != null);
+        if (sub.getTenant() != null) {
+          out.writeUTF(sub.getTenant());
+        }
+        out.writeLong(sub.getLimits().getStatements());
+        out.writeLong(sub.getLimits().getCpuTimeMs());
+        out.writeLong(sub.getLimits().getAllocatedBytes());
+        out.writeLong(sub.getTimeoutMs());
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static ExecSubmission readSubmission(DataInputStream in) throws IOException {
+    byte[] script = new byte[in.readInt()];
+    in.readFully(script);
+    ExecPriority priority = ExecPriority.valueOf(in.readUTF());
+    String tenant = in.readBoolean() ? in.readUTF() : null;
+    ExecLimits limits = new ExecLimits(in.readLong(), in.readLong(), in.readLong());
+    return new ExecSubmission(new String(script, StandardCharsets.UTF_8), priority, tenant, limits,
+          in.readLong());
+  }
+
+  private static byte[] encodeFinish(String id, ExecStatus status, byte[] output) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + output.length);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(FINISH);
+      out.writeUTF(id);
+      out.writeUTF(status.name());
+      out.writeInt(output.length);
+      out.write(output);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static ByteBuffer frame(byte[] body) {
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + body.length);
+    frame.putInt(body.length).putInt(checksum(body)).put(body).flip();
+    return frame;
+  }
+
+  private static int checksum(byte[] body) {
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    return (int) crc.getValue();
+  }
+
+  private static class Append {
+    private final String id;
+    private final byte type;
+    private final ByteBuffer frame;
+    private final CompletableFuture<Void> written;
+
+    private Append(String id, byte type, ByteBuffer frame, CompletableFuture<Void> written) {
+      this.id = id;
+      this.type = type;
+      this.frame = frame;
+      this.written = written;
+    }
+  }
+
+  private static class Recovering {
+    private final ExecSubmission submission;
+    private ExecStatus status = ExecStatus.QUEUE;
+    private byte[] output = new byte[0];
+
+    private Recovering(ExecSubmission submission) {
+      this.submission = submission;
+    }
+  }
+}
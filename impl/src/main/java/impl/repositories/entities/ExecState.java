@@ -0,0 +1,139 @@
+package impl.repositories.entities;
+
+import impl.service.ExecStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Lifecycle of an execution as one compare-and-set state machine:
+//
+//   QUEUE --start--> RUNNING --finish--> DONE, DONE_WITH_EXCEPTION, ...
+//     |                 |
+//     +--cancel--> CANCELLED, TIMED_OUT, LIMIT_EXCEEDED <--finish after cancel
+//
+// Every transition replaces an immutable phase, so the status, the pending cancel request
+// and the action that interrupts the current phase always change together. A cancel wins
+// over start for a queued execution, and only one cancel takes effect. The interrupt runs at
+// most once, on the thread whose transition installed the cancel request; one attached after
+// that request is refused instead. It may still overlap the end of the run it interrupts,
+// which is harmless for closing a context. Each phase also carries the statuses the execution
+// has been in, so a listener that falls behind can still see every transition in order.
+public class ExecState {
+  private static final Runnable NO_INTERRUPT = () -> { };
+  private final AtomicReference<Phase> phase;
+  private volatile Runnable listener = () -> { };
+
+  public ExecState(ExecStatus status) {
+    this(status, NO_INTERRUPT);
+  }
+
+  // The interrupt of a queued execution takes it out of the queue.
+  public ExecState(ExecStatus status, Runnable dequeue) {
+    this.phase = new AtomicReference<>(new Phase(status, dequeue, null, List.of(status)));
+  }
+
+  public ExecStatus get() {
+    return phase.get().status;
+  }
+
+  // The status a cancel asked to finish with, or null if none was requested.
+  public ExecStatus getCancelledAs() {
+    return phase.get().cancelledAs;
+  }
+
+  // Statuses in the order the execution went through them, the current one last.
+  public List<ExecStatus> getHistory() {
+    return phase.get().history;
+  }
+
+  // QUEUE -> RUNNING. Returns false if the execution was cancelled while queued.
+  public boolean start() {
+    Phase current = phase.get();
+    if (current.status != ExecStatus.QUEUE
+          || !phase.compareAndSet(current, current.to(ExecStatus.RUNNING, NO_INTERRUPT, null))) {
+      return false;
+    }
+    listener.run();
+    return true;
+  }
+
+  // Makes the interrupt reachable by cancel. Returns false if a cancel came first or the
+  // execution is no longer running; the caller then stops on its own.
+  public boolean attach(Runnable interrupt) {
+    Phase current;
+    do {
+      current = phase.get();
+      if (current.status != ExecStatus.RUNNING || current.cancelledAs != null) {
+        return false;
+      }
+    } while (!phase.compareAndSet(current, current.to(ExecStatus.RUNNING, interrupt, null)));
+    return true;
+  }
+
+  // A queued execution finishes with the given status at once. A running one is interrupted
+  // and finishes with it once it stops. Returns the status the cancel took effect in, or
+  // null if the execution had finished or another cancel was first.
+  public ExecStatus cancel(ExecStatus as) {
+    Phase current;
+    Phase next;
+    do {
+      current = phase.get();
+      if (current.status == ExecStatus.QUEUE) {
+        next = current.to(as, NO_INTERRUPT, as);
+      } else if (current.status == ExecStatus.RUNNING && current.cancelledAs == null) {
+        next = current.to(ExecStatus.RUNNING, NO_INTERRUPT, as);
+      } else {
+        return null;
+      }
+    } while (!phase.compareAndSet(current, next));
+    current.interrupt.run();
+    if (next.status != current.status) {
+      listener.run();
+    }
+    return current.status;
+  }
+
+  // RUNNING -> the given outcome. Returns false if the execution had already finished.
+  public boolean finish(ExecStatus outcome) {
+    Phase current;
+    do {
+      current = phase.get();
+      if (current.status != ExecStatus.RUNNING) {
+        return false;
+      }
+    } while (!phase.compareAndSet(current, current.to(outcome, NO_INTERRUPT, current.cancelledAs)));
+    listener.run();
+    return true;
+  }
+
+  // The listener runs after every status change; it should read the current status or the
+  // history rather than rely on the order of notifications.
+  public void onChange(Runnable listener) {
+    this.listener = listener;
+  }
+
+  private static final class Phase {
+    private final ExecStatus status;
+    private final Runnable interrupt;
+    private final ExecStatus cancelledAs;
+    private final List<ExecStatus> history;
+
+    private Phase(ExecStatus status, Runnable interrupt, ExecStatus cancelledAs, List<ExecStatus> history) {
+      this.status = status;
+      this.interrupt = interrupt;
+      this.cancelledAs = cancelledAs;
+      this.history = history;
+    }
+
+    private Phase to(ExecStatus next, Runnable interrupt, ExecStatus cancelledAs) {
+      if (next == status) {
+        return new Phase(next, interrupt, cancelledAs, history);
+      }
+      List<ExecStatus> extended = new ArrayList<>(history.size() + 1);
+      extended.addAll(history);
+      extended.add(next);
+      return new Phase(next, interrupt, cancelledAs, Collections.unmodifiableList(extended));
+    }
+  }
+}
@@ -1,9 +1,8 @@
 package impl.repositories.entities;
 
-import impl.service.ExecStatus;
-import java.io.OutputStream;
+import impl.service.dto.ExecSubmission;
+import impl.service.output.OutputBuffer;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicReference;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -12,8 +11,18 @@ import lombok.Getter;
 @Getter
 @EqualsAndHashCode
 public class Execution {
-  private final AtomicReference<ExecStatus> status;
-  private final OutputStream outputStream;
+  private final ExecState status;
+  private final OutputBuffer outputStream;
   private final CompletableFuture<Void> computation;
-  private final CompletableFuture<Runnable> ctCreation;
+  @EqualsAndHashCode.Exclude
+  private volatile ExecSubmission submission;  // what to run again after a restart, if known
+
+  public Execution(ExecState status, OutputBuffer outputStream, CompletableFuture<Void> computation) {
+    this(status, outputStream, computation, null);
+  }
+
+  // A finished execution is never run again, so it need not keep its script.
+  public void dropSubmission() {
+    submission = null;
+  }
 }
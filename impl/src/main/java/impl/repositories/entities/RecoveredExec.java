@@ -0,0 +1,15 @@
+package impl.repositories.entities;
+
+import impl.service.ExecStatus;
+import impl.service.dto.ExecSubmission;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class RecoveredExec {
+  private final String id;
+  private final ExecSubmission submission;
+  private final ExecStatus status;
+  private final byte[] output;
+}
@@ -0,0 +1,193 @@
+package impl.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.ResourceLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Pooled contexts are single-use: a context is handed out once and closed by the caller
+// after the script, so no global state can leak from one script into another. Pooled contexts
+// carry the default statement limit; a request with a lower one gets a fresh context.
+@Component
+@Slf4j
+public class ContextPool {
+  private static final long REFILLER_SHUTDOWN_TIMEOUT_SEC = 30;
+  private final String lang;
+  private final Engine engine;
+  private final ResourceGuard guard;
+  private final long pooledStatementLimit;
+  private final int size;
+  private final boolean enabled;
+  private final BlockingQueue<PooledContext> idle;
+  private final ExecutorService refiller;
+  private final AtomicBoolean refillScheduled = new AtomicBoolean();
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer creationTimer;
+
+  public ContextPool(@Value("${executor.lang}") String lang,
+                     @Value("${executor.thread-count:}") Integer size,
+                     @Value("${executor.context-pool.enabled:false}") Boolean enabled,
+                     Engine engine,
+                     ResourceGuard guard,
+                     MeterRegistry registry) {
+    this.lang = lang;
+    this.engine = engine;
+    this.guard = guard;
+    this.pooledStatementLimit = guard.getDefaults().getStatements();
+    this.size = size;
+    this.enabled = enabled;
+    this.idle = new LinkedBlockingQueue<>(size);
+    this.refiller = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("context-pool-refiller")
+          .setDaemon(true)
+          .build());
+    this.hits = registry.counter("executor.context.pool.requests", "result", "hit");
+    this.misses = registry.counter("executor.context.pool.requests", "result", "miss");
+    this.creationTimer = Timer.builder("executor.context.creation")
+          .publishPercentileHistogram()
+          .register(registry);
+    registry.gauge("executor.context.pool.idle", idle, BlockingQueue::size);
+    scheduleRefill();
+  }
+
+  public Context acquire(OutputStream outputStream) {
+    return acquire(outputStream, pooledStatementLimit);
+  }
+
+  public Context acquire(OutputStream outputStream, long statementLimit) {
+    PooledContext pooled = enabled && statementLimit == pooledStatementLimit ? idle.poll() : null;
+    if (pooled == null) {
+      misses.increment();
+      return creationTimer.record(() -> createContext(outputStream, statementLimit));
+    }
+    hits.increment();
+    scheduleRefill();
+    pooled.getOutput().redirectTo(outputStream);
+    if (statementLimit > 0) {
+      pooled.getContext().resetLimits();
+    }
+    return pooled.getContext();
+  }
+
+  public long getHitCount() {
+    return (long) hits.count();
+  }
+
+  public long getMissCount() {
+    return (long) misses.count();
+  }
+
+  public int getIdleCount() {
+    return idle.size();
+  }
+
+  @PreDestroy
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      refiller.shutdownNow();
+      awaitRefiller();
+      PooledContext pooled;
+      while ((pooled = idle.poll()) != null) {
+        pooled.getContext().close();
+      }
+    }
+  }
+
+  // A context still being created would block closing the engine, and one offered after
+  // the drain below would never be closed.
+  private void awaitRefiller() {
+    try {
+      if (!refiller.awaitTermination(REFILLER_SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+        log.warn("Context pool refiller did not stop in {} s", REFILLER_SHUTDOWN_TIMEOUT_SEC);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void scheduleRefill() {
+    if (enabled && !closed.get() && refillScheduled.compareAndSet(false, true)) {
+      refiller.execute(() -> {
+        refillScheduled.set(false);
+        refill();
+      });
+    }
+  }
+
+  private void refill() {
+    while (!closed.get() && idle.remainingCapacity() > 0) {
+      PooledContext pooled = creationTimer.record(this::createPooledContext);
+      if (closed.get() || !idle.offer(pooled)) {
+        pooled.getContext().close();
+        return;
+      }
+    }
+  }
+
+  private PooledContext createPooledContext() {
+    RedirectableOutputStream output = new RedirectableOutputStream();
+    Context context = createContext(output, pooledStatementLimit);
+    context.initialize(lang);
+    return new PooledContext(context, output);
+  }
+
+  private Context createContext(OutputStream outputStream, long statementLimit) {
+    Context.Builder builder = Context.newBuilder(lang)
+          .engine(engine)
+          .out(outputStream);
+    ResourceLimits limits = guard.resourceLimits(statementLimit);
+    if (limits != null) {
+      builder.resourceLimits(limits);
+    }
+    return builder.build();
+  }
+
+  @AllArgsConstructor
+  @Getter
+  private static class PooledContext {
+    private final Context context;
+    private final RedirectableOutputStream output;
+  }
+
+  private static class RedirectableOutputStream extends OutputStream {
+    private volatile OutputStream target = OutputStream.nullOutputStream();
+
+    void redirectTo(OutputStream target) {
+      this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target.flush();
+    }
+  }
+}
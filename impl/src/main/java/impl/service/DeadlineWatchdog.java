@@ -0,0 +1,220 @@
+package impl.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Hashed timer wheel for execution deadlines. Scheduling and cancelling only touch a
+// concurrent queue; one ticker thread moves new deadlines into their buckets and visits a
+// single bucket per tick, so the cost of a tick depends on the deadlines that fall into
+// it, not on how many are pending. Expired actions run on a separate thread because
+// closing a context waits for the script to stop.
+@Component
+@Slf4j
+public class DeadlineWatchdog {
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final long startTime = System.nanoTime();
+  private final Queue<Deadline> added = new ConcurrentLinkedQueue<>();
+  private final Queue<Deadline> cancelled = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pending = new AtomicLong();
+  private final Counter expired;
+  private final Thread ticker;
+  private final ExecutorService expiry;
+  private long tick;
+  private volatile boolean closed;
+
+  public DeadlineWatchdog(@Value("${executor.timeout.tick-ms:10}") Long tickMs,
+                          @Value("${executor.timeout.wheel-size:512}") Integer wheelSize,
+                          MeterRegistry registry) {
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+    int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.expired = registry.counter("executor.deadlines.expired");
+    registry.gauge("executor.deadlines.pending", pending);
+    this.expiry = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("deadline-expiry")
+          .setDaemon(true)
+          .build());
+    this.ticker = new ThreadFactoryBuilder()
+          .setNameFormat("deadline-watchdog")
+          .setDaemon(true)
+          .build()
+          .newThread(this::run);
+    ticker.start();
+  }
+
+  // A delay too long to represent is clamped to the far end of time rather than wrapping
+  // around into the past.
+  public Deadline schedule(long delay, TimeUnit unit, Runnable action) {
+    long now = System.nanoTime() - startTime;
+    long nanos = unit.toNanos(delay);
+    long time = nanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos;
+    Deadline deadline = new Deadline(time, action);
+    pending.incrementAndGet();
+    added.add(deadline);
+    return deadline;
+  }
+
+  public long getPendingCount() {
+    return pending.get();
+  }
+
+  @PreDestroy
+  public void close() {
+    closed = true;
+    ticker.interrupt();
+    expiry.shutdownNow();
+  }
+
+  private void run() {
+    while (!closed) {
+      long tickTime = (tick + 1) * tickNanos;
+      long sleep = tickTime - (System.nanoTime() - startTime);
+      if (sleep > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleep);
+        } catch (InterruptedException ex) {
+          return;
+        }
+      }
+      removeCancelled();
+      transferAdded();
+      wheel[(int) (tick & mask)].expire(tickTime);
+      tick++;
+    }
+  }
+
+  private void transferAdded() {
+    Deadline deadline;
+    while ((deadline = added.poll()) != null) {
+      if (deadline.state.get() == Deadline.CANCELLED) {
+        continue;
+      }
+      long due = deadline.time / tickNanos;
+      deadline.rounds = Math.max(due - tick, 0) / wheel.length;
+      wheel[(int) (Math.max(due, tick) & mask)].add(deadline);
+    }
+  }
+
+  private void removeCancelled() {
+    Deadline deadline;
+    while ((deadline = cancelled.poll()) != null) {
+      if (deadline.bucket != null) {
+        deadline.bucket.remove(deadline);
+      }
+    }
+  }
+
+  public class Deadline {
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private final long time;
+    private final Runnable action;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    // owned by the ticker thread
+    private long rounds;
+    private Bucket bucket;
+    private Deadline prev;
+    private Deadline next;
+
+    private Deadline(long time, Runnable action) {
+      this.time = time;
+      this.action = action;
+    }
+
+    // Returns false if the deadline already expired.
+    public boolean cancel() {
+      if (!state.compareAndSet(WAITING, CANCELLED)) {
+        return state.get() == CANCELLED;
+      }
+      pending.decrementAndGet();
+      cancelled.add(this);
+      return true;
+    }
+
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+
+    private void expire() {
+      if (!state.compareAndSet(WAITING, EXPIRED)) {
+        return;
+      }
+      pending.decrementAndGet();
+      expired.increment();
+      try {
+        expiry.execute(action);
+      } catch (RuntimeException ex) {
+        log.warn("Deadline action was not run", ex);
+      }
+    }
+  }
+
+  private static class Bucket {
+    private Deadline head;
+    private Deadline tail;
+
+    private void add(Deadline deadline) {
+      deadline.bucket = this;
+      if (head == null) {
+        head = tail = deadline;
+      } else {
+        tail.next = deadline;
+        deadline.prev = tail;
+        tail = deadline;
+      }
+    }
+
+    private void expire(long tickTime) {
+      Deadline deadline = head;
+      while (deadline != null) {
+        Deadline next = deadline.next;
+        if (deadline.rounds <= 0 && deadline.time <= tickTime) {
+          remove(deadline);
+          deadline.expire();
+        } else if (deadline.state.get() == Deadline.CANCELLED) {
+          remove(deadline);
+        } else {
+          deadline.rounds--;
+        }
+        deadline = next;
+      }
+    }
+
+    private void remove(Deadline deadline) {
+      if (deadline.bucket != this) {
+        return;
+      }
+      if (deadline.prev == null) {
+        head = deadline.next;
+      } else {
+        deadline.prev.next = deadline.next;
+      }
+      if (deadline.next == null) {
+        tail = deadline.prev;
+      } else {
+        deadline.next.prev = deadline.prev;
+      }
+      deadline.prev = deadline.next = null;
+      deadline.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package impl.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Completion rate over the last `window` finished tasks, measured up to now,
+// so the estimate decays while nothing completes.
+class DrainRateEstimator {
+  private final long[] completions;
+  private final LongSupplier clock;
+  private int next;
+  private int count;
+
+  DrainRateEstimator(int window, LongSupplier clock) {
+    this.completions = new long[window];
+    this.clock = clock;
+  }
+
+  synchronized void recordCompletion() {
+    completions[next] = clock.getAsLong();
+    next = (next + 1) % completions.length;
+    count = Math.min(count + 1, completions.length);
+  }
+
+  synchronized double perSecond() {
+    if (count < 2) {
+      return 0;
+    }
+    long oldest = completions[(next - count + completions.length) % completions.length];
+    long elapsed = Math.max(clock.getAsLong() - oldest, 1);
+    return (count - 1) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  // seconds until `backlog` tasks are drained at the current rate, within [1, max]
+  long secondsToDrain(long backlog, long max) {
+    double rate = perSecond();
+    if (rate <= 0) {
+      return max;
+    }
+    return Math.max(1, Math.min(max, (long) Math.ceil(backlog / rate)));
+  }
+}
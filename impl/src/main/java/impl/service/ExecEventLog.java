@@ -0,0 +1,113 @@
+package impl.service;
+
+import impl.service.dto.ExecEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Sequenced log of execution lifecycle events. The most recent events are kept in a ring so
+// that a subscriber can resume after the last sequence number it saw. Publishing never
+// blocks: every subscriber has a bounded buffer, and one whose buffer is full is dropped
+// and told so, instead of holding back the executions that publish.
+@Component
+public class ExecEventLog {
+  public static final String DELETED = "DELETED";
+  private final ExecEvent[] history;
+  private final int bufferSize;
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+  private final Counter dropped;
+  private long lastSeq;  // guarded by this
+
+  public ExecEventLog(@Value("${executor.events.history-size:10000}") Integer historySize,
+                      @Value("${executor.events.buffer-size:1000}") Integer bufferSize,
+                      MeterRegistry registry) {
+    this.history = new ExecEvent[Math.max(historySize, 1)];
+    this.bufferSize = bufferSize;
+    this.dropped = registry.counter("executor.events.subscribers.dropped");
+    registry.gauge("executor.events.subscribers", subscriptions, Set::size);
+  }
+
+  public void publish(String execId, ExecStatus status) {
+    publish(execId, status.name());
+  }
+
+  public synchronized void publish(String execId, String type) {
+    ExecEvent event = new ExecEvent(++lastSeq, execId, type, System.currentTimeMillis());
+    history[(int) (event.getSeq() % history.length)] = event;
+    for (Subscription sub : subscriptions) {
+      if (!sub.queue.offer(event)) {
+        drop(sub);
+      }
+    }
+  }
+
+  // Replays the retained events after the given sequence number, then follows new ones.
+  // Without a sequence number only new events are delivered. If events after it are no
+  // longer retained, or it was never handed out, the subscription starts with a gap.
+  public synchronized Subscription subscribe(Long afterSeq) {
+    Subscription sub = new Subscription(bufferSize);
+    long from = afterSeq == null ? lastSeq : afterSeq;
+    long oldest = Math.max(lastSeq - history.length, 0);
+    if (from < oldest || from > lastSeq) {
+      sub.gap = true;
+      from = lastSeq;
+    }
+    for (long seq = from + 1; seq <= lastSeq; seq++) {
+      if (!sub.queue.offer(history[(int) (seq % history.length)])) {
+        sub.overflowed = true;
+        dropped.increment();
+        return sub;
+      }
+    }
+    subscriptions.add(sub);
+    return sub;
+  }
+
+  public void unsubscribe(Subscription sub) {
+    subscriptions.remove(sub);
+  }
+
+  public synchronized long getLastSeq() {
+    return lastSeq;
+  }
+
+  public int getSubscriberCount() {
+    return subscriptions.size();
+  }
+
+  private void drop(Subscription sub) {
+    subscriptions.remove(sub);
+    sub.overflowed = true;
+    dropped.increment();
+  }
+
+  public static class Subscription {
+    private final BlockingQueue<ExecEvent> queue;
+    private volatile boolean gap;
+    private volatile boolean overflowed;
+
+    private Subscription(int bufferSize) {
+      this.queue = new ArrayBlockingQueue<>(Math.max(bufferSize, 1));
+    }
+
+    public int drainTo(List<ExecEvent> target, int max) {
+      return queue.drainTo(target, max);
+    }
+
+    // Events before the first delivered one were lost; the reader has to resynchronize.
+    public boolean hasGap() {
+      return gap;
+    }
+
+    // No more events will be delivered once the buffered ones are drained.
+    public boolean isOverflowed() {
+      return overflowed;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package impl.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import impl.service.dto.ExecEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import rest.api.dto.ExecEventResp;
+
+// Pushes lifecycle events of all executions as SSE, one 'exec' event per transition with the
+// sequence number as event id. A 'reset' event means earlier events were lost and the client
+// should reload the state it tracks; an 'overflow' event ends a stream that fell too far
+// behind, and the client resumes by reconnecting with the last id it received. Sends run on
+// a bounded sender pool, one at a time per subscriber, so a client that stops reading fills
+// only its own buffer; while every sender is blocked, subscribers skip pump rounds.
+@Component
+@Slf4j
+public class ExecEventStreamer {
+  private static final int MAX_EVENTS_PER_PUMP = 256;
+  private final ExecEventLog events;
+  private final ScheduledExecutorService pump;
+  private final ExecutorService senders;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final long timeout;
+
+  public ExecEventStreamer(ExecEventLog events,
+                           @Value("${executor.events.stream.interval-ms:100}") Long interval,
+                           @Value("${executor.events.stream.timeout-ms:1800000}") Long timeout,
+                           @Value("${executor.events.stream.senders:16}") Integer senderCount) {
+    this.events = events;
+    this.timeout = timeout;
+    this.pump = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("event-streamer")
+          .setDaemon(true)
+          .build());
+    ThreadPoolExecutor senders = new ThreadPoolExecutor(senderCount, senderCount,
+          60L, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(senderCount),
+          new ThreadFactoryBuilder()
+                .setNameFormat("event-stream-sender-%d")
+                .setDaemon(true)
+                .build());
+    senders.allowCoreThreadTimeOut(true);
+    this.senders = senders;
+    pump.scheduleWithFixedDelay(this::pumpAll, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public SseEmitter subscribe(Long lastEventId) {
+    SseEmitter emitter = new SseEmitter(timeout);
+    Subscriber sub = new Subscriber(events.subscribe(lastEventId), emitter);
+    emitter.onCompletion(() -> close(sub));
+    emitter.onTimeout(() -> close(sub));
+    emitter.onError(ex -> close(sub));
+    subscribers.add(sub);
+    return emitter;
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  @PreDestroy
+  public void close() {
+    pump.shutdownNow();
+    senders.shutdownNow();
+    subscribers.forEach(sub -> {
+      close(sub);
+      sub.emitter.complete();
+    });
+  }
+
+  private void pumpAll() {
+    for (Subscriber sub : subscribers) {
+      if (sub.sending.compareAndSet(false, true)) {
+        try {
+          senders.execute(() -> {
+            try {
+              pump(sub);
+            } finally {
+              sub.sending.set(false);
+            }
+          });
+        } catch (RejectedExecutionException ex) {
+          sub.sending.set(false);  // every sender is busy, try again next round
+        }
+      }
+    }
+  }
+
+  private void pump(Subscriber sub) {
+    try {
+      if (sub.subscription.hasGap() && !sub.reset) {
+        sub.emitter.send(SseEmitter.event()
+              .name("reset")
+              .data(events.getLastSeq()));
+        sub.reset = true;
+      }
+      boolean overflowed = sub.subscription.isOverflowed();
+      List<ExecEvent> batch = new ArrayList<>();
+      while (sub.subscription.drainTo(batch, MAX_EVENTS_PER_PUMP) > 0) {
+        for (ExecEvent event : batch) {
+          sub.emitter.send(SseEmitter.event()
+                .name("exec")
+                .id(String.valueOf(event.getSeq()))
+                .data(new ExecEventResp(event.getSeq(), event.getExecId(), event.getType(), event.getTimestamp())));
+        }
+        batch.clear();
+      }
+      if (overflowed) {
+        sub.emitter.send(SseEmitter.event()
+              .name("overflow")
+              .data(events.getLastSeq()));
+        close(sub);
+        sub.emitter.complete();
+      }
+    } catch (IOException | IllegalStateException ex) {
+      log.debug("Event stream is closed: {}", ex.getMessage());
+      close(sub);
+    }
+  }
+
+  private void close(Subscriber sub) {
+    subscribers.remove(sub);
+    events.unsubscribe(sub.subscription);
+  }
+
+  @RequiredArgsConstructor
+  private static class Subscriber {
+    private final ExecEventLog.Subscription subscription;
+    private final SseEmitter emitter;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private boolean reset;
+  }
+}
@@ -0,0 +1,31 @@
+package impl.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+// Zero means unlimited.
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter
+public class ExecLimits {
+  public static final ExecLimits NONE = new ExecLimits(0, 0, 0);
+  private final long statements;
+  private final long cpuTimeMs;
+  private final long allocatedBytes;
+
+  // Requested limits apply only where they are stricter than these.
+  public ExecLimits lowerTo(ExecLimits requested) {
+    return new ExecLimits(
+          lower(statements, requested.statements),
+          lower(cpuTimeMs, requested.cpuTimeMs),
+          lower(allocatedBytes, requested.allocatedBytes));
+  }
+
+  private static long lower(long limit, long requested) {
+    if (requested <= 0) {
+      return limit;
+    }
+    return limit <= 0 ? requested : Math.min(limit, requested);
+  }
+}
@@ -0,0 +1,21 @@
+package impl.service;
+
+import impl.service.exceptions.UnknownPriorityException;
+import java.util.Locale;
+
+public enum ExecPriority {
+  INTERACTIVE,
+  NORMAL,
+  BATCH;
+
+  public static ExecPriority parse(String priority) {
+    if (priority == null || priority.isEmpty()) {
+      return NORMAL;
+    }
+    try {
+      return valueOf(priority.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException ex) {
+      throw new UnknownPriorityException(priority);
+    }
+  }
+}
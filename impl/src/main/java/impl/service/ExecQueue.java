@@ -0,0 +1,390 @@
+package impl.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Work queue of the executor pool. Tenants are served by start-time fair queueing:
+// the next task comes from the backlogged tenant with the smallest virtual time, which
+// advances by the worker time its tasks use divided by the tenant weight. A tenant that
+// becomes backlogged starts at the current virtual time, so idle tenants bank no credit
+// and the share they leave unused goes to the others. Within a tenant tasks keep the
+// priority order of QueuedTask. Room can be reserved ahead of enqueueing, so a submission
+// can be journaled only once it is certain to be queued; reserved room counts as taken.
+@Component
+public class ExecQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+  public static final String DEFAULT_TENANT = "default";
+  private static final String OTHER_TENANTS_TAG = "other";
+  private static final long INITIAL_COST_ESTIMATE = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final double COST_SMOOTHING = 0.2;
+  private final int capacity;
+  private final Map<String, Double> weights = new HashMap<>();
+  private final double defaultWeight;
+  private final MeterRegistry registry;
+  private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private int count;
+  private int reserved;
+  private double virtualTime;
+
+  public ExecQueue(@Value("${executor.queue.max-depth:0}") Integer maxDepth,
+                   @Value("#{${executor.tenants.weights:{:}}}") Map<String, String> weights,
+                   @Value("${executor.tenants.default-weight:1}") Double defaultWeight,
+                   MeterRegistry registry) {
+    this.capacity = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+    weights.forEach((tenant, weight) -> this.weights.put(tenant, Double.parseDouble(weight)));
+    this.defaultWeight = defaultWeight;
+    this.registry = registry;
+  }
+
+  @Override
+  public boolean offer(Runnable task) {
+    QueuedTask queued = (QueuedTask) task;
+    lock.lock();
+    try {
+      if (count + reserved >= capacity) {
+        return false;
+      }
+      enqueue(queued);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+    QueuedTask queued = (QueuedTask) task;
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (count + reserved >= capacity) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = notFull.awaitNanos(nanos);
+      }
+      enqueue(queued);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(Runnable task) throws InterruptedException {
+    QueuedTask queued = (QueuedTask) task;
+    lock.lockInterruptibly();
+    try {
+      while (count + reserved >= capacity) {
+        notFull.await();
+      }
+      enqueue(queued);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Reserves room for a batch with one capacity check: all of it or nothing when atomic,
+  // otherwise as many tasks from the front as fit. Returns the number of places reserved;
+  // each is then either filled or released.
+  int reserve(int tasks, boolean atomic) {
+    lock.lock();
+    try {
+      int room = capacity - count - reserved;
+      if (atomic && tasks > room) {
+        return 0;
+      }
+      int admitted = Math.min(tasks, room);
+      reserved += admitted;
+      return admitted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Enqueues tasks into places reserved for them.
+  void fill(List<QueuedTask> tasks) {
+    lock.lock();
+    try {
+      reserved -= tasks.size();
+      tasks.forEach(this::enqueue);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release(int places) {
+    lock.lock();
+    try {
+      reserved -= places;
+      if (places > 0) {
+        notFull.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    lock.lock();
+    try {
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    lock.lock();
+    try {
+      Tenant next = nextTenant();
+      return next == null ? null : next.tasks.peek();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object task) {
+    if (!(task instanceof QueuedTask)) {
+      return false;
+    }
+    QueuedTask queued = (QueuedTask) task;
+    lock.lock();
+    try {
+      Tenant tenant = tenants.get(queued.getTenant());
+      if (tenant == null || !tenant.tasks.remove(queued)) {
+        return false;
+      }
+      count--;
+      notFull.signal();
+      forgetIfIdle(tenant);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    lock.lock();
+    try {
+      return capacity - count - reserved;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> target) {
+    return drainTo(target, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> target, int maxElements) {
+    lock.lock();
+    try {
+      int drained = 0;
+      while (drained < maxElements && count > 0) {
+        target.add(dequeue());
+        drained++;
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Iterates over a snapshot; removal goes through remove(Object).
+  @Override
+  public Iterator<Runnable> iterator() {
+    List<Runnable> snapshot = new ArrayList<>();
+    lock.lock();
+    try {
+      tenants.values().forEach(tenant -> snapshot.addAll(tenant.tasks));
+    } finally {
+      lock.unlock();
+    }
+    Iterator<Runnable> it = snapshot.iterator();
+    return new Iterator<>() {
+      private Runnable last;
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Runnable next() {
+        last = it.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        ExecQueue.this.remove(last);
+      }
+    };
+  }
+
+  void started(QueuedTask task) {
+    String tag;
+    lock.lock();
+    try {
+      Tenant tenant = tenantOf(task.getTenant());
+      if (!task.isDispatched()) {
+        charge(tenant, task);
+      }
+      tenant.running++;
+      tag = tenant.tag;
+    } finally {
+      lock.unlock();
+    }
+    registry.timer("executor.tenant.wait", "tenant", tag)
+          .record(System.nanoTime() - task.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+  }
+
+  void finished(QueuedTask task, long workerTime) {
+    String tag;
+    lock.lock();
+    try {
+      Tenant tenant = tenantOf(task.getTenant());
+      tenant.vtime += (workerTime - task.getCharged()) / tenant.weight;
+      tenant.costEstimate += (long) (COST_SMOOTHING * (workerTime - tenant.costEstimate));
+      tenant.running--;
+      tag = tenant.tag;
+      forgetIfIdle(tenant);
+    } finally {
+      lock.unlock();
+    }
+    registry.timer("executor.tenant.worker.time", "tenant", tag)
+          .record(workerTime, TimeUnit.NANOSECONDS);
+  }
+
+  private void enqueue(QueuedTask task) {
+    Tenant tenant = tenantOf(task.getTenant());
+    if (tenant.tasks.isEmpty()) {
+      tenant.vtime = Math.max(tenant.vtime, virtualTime);
+    }
+    tenant.tasks.add(task);
+    count++;
+    notEmpty.signal();
+  }
+
+  private QueuedTask dequeue() {
+    Tenant next = nextTenant();
+    if (next == null) {
+      return null;
+    }
+    QueuedTask task = next.tasks.poll();
+    count--;
+    notFull.signal();
+    virtualTime = Math.max(virtualTime, next.vtime);
+    charge(next, task);
+    return task;
+  }
+
+  // Charges the expected cost up front so that workers taking tasks at the same
+  // moment spread over tenants; finished() settles the difference with the real cost.
+  private void charge(Tenant tenant, QueuedTask task) {
+    task.dispatch(tenant.costEstimate);
+    tenant.vtime += tenant.costEstimate / tenant.weight;
+  }
+
+  private Tenant nextTenant() {
+    Tenant next = null;
+    for (Tenant tenant : tenants.values()) {
+      if (!tenant.tasks.isEmpty() && (next == null || tenant.vtime < next.vtime)) {
+        next = tenant;
+      }
+    }
+    return next;
+  }
+
+  private Tenant tenantOf(String id) {
+    return tenants.computeIfAbsent(id, key -> new Tenant(
+          weights.getOrDefault(key, defaultWeight),
+          weights.containsKey(key) || DEFAULT_TENANT.equals(key) ? key : OTHER_TENANTS_TAG,
+          virtualTime));
+  }
+
+  private void forgetIfIdle(Tenant tenant) {
+    if (tenant.tasks.isEmpty() && tenant.running == 0) {
+      tenants.values().remove(tenant);
+    }
+  }
+
+  private static class Tenant {
+    private final double weight;
+    private final String tag;  // metric tag; unconfigured tenants share one to bound cardinality
+    private final PriorityQueue<QueuedTask> tasks = new PriorityQueue<>();
+    private double vtime;
+    private long costEstimate = INITIAL_COST_ESTIMATE;
+    private int running;
+
+    private Tenant(double weight, String tag, double vtime) {
+      this.weight = weight;
+      this.tag = tag;
+      this.vtime = vtime;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package impl.service;
+
+import impl.repositories.ExecJournal;
+import impl.repositories.ExecRepository;
+import impl.repositories.entities.ExecState;
+import impl.repositories.entities.Execution;
+import impl.repositories.entities.RecoveredExec;
+import impl.service.dto.ExecSubmission;
+import impl.service.exceptions.QueueFullException;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputBufferFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+// Puts back what the journal kept from the previous run before any request is served:
+// finished executions as they were, queued ones submitted again under their old ids.
+// Queued ones the queue has no room for finish INTERRUPTED, like those that were running.
+@Component
+@AllArgsConstructor
+@Slf4j
+public class ExecRecovery {
+  private final ExecJournal journal;
+  private final ExecRepository repo;
+  private final ScriptExecutor executor;
+  private final OutputBufferFactory outputFactory;
+
+  @PostConstruct
+  public void recover() {
+    List<RecoveredExec> recovered = journal.recover();
+    if (recovered.isEmpty()) {
+      return;
+    }
+    List<RecoveredExec> queued = new ArrayList<>();
+    for (RecoveredExec exec : recovered) {
+      if (exec.getStatus() == ExecStatus.QUEUE) {
+        queued.add(exec);
+      } else {
+        repo.restoreExecution(exec.getId(), finished(exec.getSubmission(), exec.getStatus(), exec.getOutput()));
+      }
+    }
+    List<Execution> resubmitted = resubmit(queued.stream()
+          .map(RecoveredExec::getSubmission)
+          .collect(Collectors.toList()));
+    for (int i = 0; i < queued.size(); i++) {
+      String id = queued.get(i).getId();
+      if (i < resubmitted.size()) {
+        repo.restoreExecution(id, resubmitted.get(i));
+      } else {
+        Execution interrupted = finished(queued.get(i).getSubmission(), ExecStatus.INTERRUPTED, new byte[0]);
+        repo.restoreExecution(id, interrupted);
+        journal.finished(id, interrupted);
+      }
+    }
+    log.info("Recovered {} executions, {} of them queued again",
+          recovered.size(), resubmitted.size());
+  }
+
+  private List<Execution> resubmit(List<ExecSubmission> submissions) {
+    if (submissions.isEmpty()) {
+      return List.of();
+    }
+    try {
+      return executor.executeAllAsync(submissions, false);
+    } catch (QueueFullException ex) {
+      return List.of();
+    }
+  }
+
+  private Execution finished(ExecSubmission submission, ExecStatus status, byte[] output) {
+    OutputBuffer buffer = outputFactory.create();
+    try {
+      buffer.write(output);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return new Execution(new ExecState(status), buffer, CompletableFuture.completedFuture(null), submission);
+  }
+}
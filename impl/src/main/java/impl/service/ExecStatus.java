@@ -8,11 +8,17 @@ public enum ExecStatus {
     CANCELLED,
     DONE,
     DONE_WITH_EXCEPTION,
-    DONE_WITH_SYNTAX_ERROR;
+    DONE_WITH_SYNTAX_ERROR,
+    LIMIT_EXCEEDED,
+    TIMED_OUT,
+    INTERRUPTED;
 
     public static final Set<ExecStatus> FINISHED =
           Set.of(ExecStatus.CANCELLED,
                 ExecStatus.DONE,
                 ExecStatus.DONE_WITH_EXCEPTION,
-                ExecStatus.DONE_WITH_SYNTAX_ERROR);
+                ExecStatus.DONE_WITH_SYNTAX_ERROR,
+                ExecStatus.LIMIT_EXCEEDED,
+                ExecStatus.TIMED_OUT,
+                ExecStatus.INTERRUPTED);
 }
@@ -0,0 +1,141 @@
+package impl.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import impl.service.dto.OutputChunk;
+import impl.service.exceptions.UnknownIdException;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import rest.api.dto.OutputChunkResp;
+
+// A single pump thread polls every subscribed execution and hands the ones not already being
+// written to a sender thread, so subscribers hold no servlet threads while they wait and a
+// client that stops reading only delays its own stream; it resumes from its offset later.
+// The sender pool is bounded: when all senders are blocked, subscribers skip pump rounds.
+// Output is sent as JSON, which keeps line breaks in the output from breaking event framing.
+@Component
+@Slf4j
+public class OutputStreamer {
+  private final ScriptExecService service;
+  private final ScheduledExecutorService pump;
+  private final ExecutorService senders;
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+  private final long timeout;
+  private final int maxChunkBytes;
+
+  public OutputStreamer(ScriptExecService service,
+                        @Value("${executor.output.stream.interval-ms:100}") Long interval,
+                        @Value("${executor.output.stream.timeout-ms:1800000}") Long timeout,
+                        @Value("${executor.output.stream.max-chunk-bytes:1048576}") Integer maxChunkBytes,
+                        @Value("${executor.output.stream.senders:16}") Integer senderCount) {
+    this.service = service;
+    this.timeout = timeout;
+    this.maxChunkBytes = maxChunkBytes;
+    this.pump = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("output-streamer")
+          .setDaemon(true)
+          .build());
+    ThreadPoolExecutor senders = new ThreadPoolExecutor(senderCount, senderCount,
+          60L, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(senderCount),
+          new ThreadFactoryBuilder()
+                .setNameFormat("output-stream-sender-%d")
+                .setDaemon(true)
+                .build());
+    senders.allowCoreThreadTimeOut(true);
+    this.senders = senders;
+    pump.scheduleWithFixedDelay(this::pumpAll, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public SseEmitter subscribe(String execId, long offset) {
+    service.readExecutionOutput(execId, offset, 0);
+    SseEmitter emitter = new SseEmitter(timeout);
+    Subscription sub = new Subscription(execId, emitter);
+    sub.offset = offset;
+    emitter.onCompletion(() -> subscriptions.remove(sub));
+    emitter.onTimeout(() -> subscriptions.remove(sub));
+    emitter.onError(ex -> subscriptions.remove(sub));
+    subscriptions.add(sub);
+    return emitter;
+  }
+
+  public int getSubscriberCount() {
+    return subscriptions.size();
+  }
+
+  @PreDestroy
+  public void close() {
+    pump.shutdownNow();
+    senders.shutdownNow();
+    subscriptions.forEach(sub -> sub.emitter.complete());
+  }
+
+  private void pumpAll() {
+    for (Subscription sub : subscriptions) {
+      if (sub.sending.compareAndSet(false, true)) {
+        try {
+          senders.execute(() -> {
+            try {
+              pump(sub);
+            } finally {
+              sub.sending.set(false);
+            }
+          });
+        } catch (RejectedExecutionException ex) {
+          sub.sending.set(false);  // every sender is busy, try again next round
+        }
+      }
+    }
+  }
+
+  private void pump(Subscription sub) {
+    try {
+      OutputChunk chunk = service.readExecutionOutput(sub.execId, sub.offset, maxChunkBytes);
+      if (!chunk.getOutput().isEmpty()) {
+        sub.emitter.send(SseEmitter.event()
+              .name("output")
+              .id(String.valueOf(chunk.getOffset()))
+              .data(new OutputChunkResp(chunk.getOutput(), chunk.getOffset())));
+      }
+      sub.offset = chunk.getOffset();
+      if (chunk.isFinished()) {
+        sub.emitter.send(SseEmitter.event()
+              .name("status")
+              .data(chunk.getStatus()));
+        finish(sub);
+      }
+    } catch (UnknownIdException ex) {
+      finish(sub);
+    } catch (IOException | IllegalStateException ex) {
+      log.debug("Output stream of {} is closed: {}", sub.execId, ex.getMessage());
+      subscriptions.remove(sub);
+    }
+  }
+
+  private void finish(Subscription sub) {
+    subscriptions.remove(sub);
+    sub.emitter.complete();
+  }
+
+  @RequiredArgsConstructor
+  private static class Subscription {
+    private final String execId;
+    private final SseEmitter emitter;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private long offset;
+  }
+}
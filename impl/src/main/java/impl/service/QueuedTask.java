@@ -0,0 +1,56 @@
+package impl.service;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+// Within a tenant, queued tasks run in order of enqueue time plus the aging delay of their
+// priority, so a lower priority task is overtaken only by work submitted less than that delay after it.
+@Getter
+class QueuedTask implements Runnable, Comparable<QueuedTask> {
+  private final String tenant;
+  private final ExecPriority priority;
+  private final long enqueuedAt;
+  private final long deadline;
+  private final long seq;
+  private final Timer waitTimer;
+  private final ExecQueue queue;
+  private final Runnable body;
+  private boolean dispatched;  // guarded by the queue lock
+  private long charged;
+
+  QueuedTask(String tenant, ExecPriority priority, long enqueuedAt, long agingDelay, long seq,
+             Timer waitTimer, ExecQueue queue, Runnable body) {
+    this.tenant = tenant;
+    this.priority = priority;
+    this.enqueuedAt = enqueuedAt;
+    this.deadline = enqueuedAt + agingDelay;
+    this.seq = seq;
+    this.waitTimer = waitTimer;
+    this.queue = queue;
+    this.body = body;
+  }
+
+  void dispatch(long charge) {
+    dispatched = true;
+    charged = charge;
+  }
+
+  @Override
+  public void run() {
+    waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+    queue.started(this);
+    long start = System.nanoTime();
+    try {
+      body.run();
+    } finally {
+      queue.finished(this, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public int compareTo(QueuedTask other) {
+    long diff = deadline - other.deadline;
+    return diff != 0 ? Long.signum(diff) : Long.compare(seq, other.seq);
+  }
+}
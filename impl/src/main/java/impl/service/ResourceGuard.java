@@ -0,0 +1,209 @@
+package impl.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.ResourceLimitEvent;
+import org.graalvm.polyglot.ResourceLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// The statement limit is enforced by the polyglot context itself. CPU time and allocated
+// bytes of the worker thread are sampled by one checker thread; once either budget is spent
+// the execution is cancelled from a separate thread, because closing a context waits for
+// the script to stop and sampling of the other executions must go on meanwhile.
+// On GraalVM 20.0 the statement count of an engine is no longer checked once a context
+// with a statement limit has been force-closed, and every cancel does that, so a statement
+// limit without a CPU time limit gets one derived from the statement count.
+@Component
+@Slf4j
+public class ResourceGuard {
+  @Getter
+  private final ExecLimits defaults;
+  private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private final Map<Thread, Watch> running = new ConcurrentHashMap<>();
+  private final ResourceLimits defaultResourceLimits;
+  private final long backstopNanosPerStatement;
+  private final long backstopMinCpuTimeMs;
+  private final ScheduledExecutorService checker;
+  private final ExecutorService canceller;
+  private final Counter statementsExceeded;
+  private final Counter cpuTimeExceeded;
+  private final Counter allocationExceeded;
+
+  public ResourceGuard(@Value("${executor.limits.statements:0}") Long statements,
+                       @Value("${executor.limits.cpu-time-ms:0}") Long cpuTimeMs,
+                       @Value("${executor.limits.allocated-bytes:0}") Long allocatedBytes,
+                       @Value("${executor.limits.check-interval-ms:10}") Long checkInterval,
+                       @Value("${executor.limits.statement-backstop.cpu-ns-per-statement:1000}") Long backstopNanosPerStatement,
+                       @Value("${executor.limits.statement-backstop.min-cpu-time-ms:5000}") Long backstopMinCpuTimeMs,
+                       MeterRegistry registry) {
+    this.defaults = new ExecLimits(statements, cpuTimeMs, allocatedBytes);
+    this.defaultResourceLimits = statements > 0 ? buildResourceLimits(statements) : null;
+    this.backstopNanosPerStatement = backstopNanosPerStatement;
+    this.backstopMinCpuTimeMs = backstopMinCpuTimeMs;
+    if (statements > 0 && cpuTimeMs <= 0) {
+      log.info("The statement limit is backed by a CPU time limit of {} ms", cpuTimeBackstop(statements));
+    }
+    if (threads.isThreadCpuTimeSupported()) {
+      threads.setThreadCpuTimeEnabled(true);
+    } else {
+      log.warn("Thread CPU time is not supported, CPU time limits are not enforced");
+    }
+    if (threads.isThreadAllocatedMemorySupported()) {
+      threads.setThreadAllocatedMemoryEnabled(true);
+    } else {
+      log.warn("Thread allocation tracking is not supported, allocation limits are not enforced");
+    }
+    this.statementsExceeded = registry.counter("executor.limits.exceeded", "limit", "statements");
+    this.cpuTimeExceeded = registry.counter("executor.limits.exceeded", "limit", "cpu-time");
+    this.allocationExceeded = registry.counter("executor.limits.exceeded", "limit", "allocated-bytes");
+    this.checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("resource-guard")
+          .setDaemon(true)
+          .build());
+    this.canceller = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("resource-guard-cancel")
+          .setDaemon(true)
+          .build());
+    checker.scheduleWithFixedDelay(this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+  }
+
+  public ExecLimits effective(ExecLimits requested) {
+    ExecLimits limits = defaults.lowerTo(requested);
+    if (limits.getStatements() > 0 && limits.getCpuTimeMs() <= 0) {
+      return new ExecLimits(limits.getStatements(), cpuTimeBackstop(limits.getStatements()),
+            limits.getAllocatedBytes());
+    }
+    return limits;
+  }
+
+  // Generous on purpose: it only has to stop a script whose statements are no longer counted.
+  private long cpuTimeBackstop(long statements) {
+    double derived = statements * (double) backstopNanosPerStatement / TimeUnit.MILLISECONDS.toNanos(1);
+    return Math.max(backstopMinCpuTimeMs, (long) Math.min(derived, Long.MAX_VALUE));
+  }
+
+  // null when there is no statement limit
+  public ResourceLimits resourceLimits(long statements) {
+    if (statements <= 0) {
+      return null;
+    }
+    return statements == defaults.getStatements() ? defaultResourceLimits : buildResourceLimits(statements);
+  }
+
+  // Starts watching the calling thread; cancel is run at most once, from the canceller thread.
+  public Watch watch(ExecLimits limits, Runnable cancel) {
+    Thread thread = Thread.currentThread();
+    Watch watch = new Watch(thread, limits, cancel,
+          cpuTime(thread), allocatedBytes(thread));
+    running.put(thread, watch);
+    return watch;
+  }
+
+  public int getWatchedCount() {
+    return running.size();
+  }
+
+  @PreDestroy
+  public void close() {
+    checker.shutdownNow();
+    canceller.shutdownNow();
+  }
+
+  private ResourceLimits buildResourceLimits(long statements) {
+    return ResourceLimits.newBuilder()
+          .statementLimit(statements, null)
+          .onLimit(this::onStatementLimit)
+          .build();
+  }
+
+  // invoked on the thread that ran out of statements, just before the context is cancelled
+  private void onStatementLimit(ResourceLimitEvent event) {
+    Watch watch = running.get(Thread.currentThread());
+    if (watch != null && watch.exceed()) {
+      statementsExceeded.increment();
+    }
+  }
+
+  private void check() {
+    for (Watch watch : running.values()) {
+      ExecLimits limits = watch.limits;
+      if (limits.getCpuTimeMs() > 0 && cpuTime(watch.thread) - watch.cpuTimeAtStart
+            > TimeUnit.MILLISECONDS.toNanos(limits.getCpuTimeMs())) {
+        if (watch.exceed()) {
+          cpuTimeExceeded.increment();
+          cancel(watch);
+        }
+      } else if (limits.getAllocatedBytes() > 0 && allocatedBytes(watch.thread) - watch.allocatedAtStart
+            > limits.getAllocatedBytes()) {
+        if (watch.exceed()) {
+          allocationExceeded.increment();
+          cancel(watch);
+        }
+      }
+    }
+  }
+
+  private void cancel(Watch watch) {
+    try {
+      canceller.execute(watch.cancel);
+    } catch (RuntimeException ex) {
+      log.warn("Cancel of an execution over its limits was not run", ex);
+    }
+  }
+
+  private long cpuTime(Thread thread) {
+    return threads.isThreadCpuTimeEnabled() ? threads.getThreadCpuTime(thread.getId()) : 0;
+  }
+
+  private long allocatedBytes(Thread thread) {
+    return threads.isThreadAllocatedMemoryEnabled() ? threads.getThreadAllocatedBytes(thread.getId()) : 0;
+  }
+
+  public class Watch implements AutoCloseable {
+    private final Thread thread;
+    private final ExecLimits limits;
+    private final Runnable cancel;
+    private final long cpuTimeAtStart;
+    private final long allocatedAtStart;
+    private volatile boolean exceeded;
+
+    private Watch(Thread thread, ExecLimits limits, Runnable cancel,
+                  long cpuTimeAtStart, long allocatedAtStart) {
+      this.thread = thread;
+      this.limits = limits;
+      this.cancel = cancel;
+      this.cpuTimeAtStart = cpuTimeAtStart;
+      this.allocatedAtStart = allocatedAtStart;
+    }
+
+    public boolean isExceeded() {
+      return exceeded;
+    }
+
+    private synchronized boolean exceed() {
+      if (exceeded) {
+        return false;
+      }
+      exceeded = true;
+      return true;
+    }
+
+    @Override
+    public void close() {
+      running.remove(thread, this);
+    }
+  }
+}
@@ -1,22 +1,44 @@
 package impl.service;
 
 import impl.service.dto.ExecInfo;
+import impl.service.dto.ExecSubmission;
+import impl.service.dto.IdPage;
+import impl.service.dto.OutputChunk;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import org.springframework.core.io.Resource;
 
 public interface ScriptExecService {
 
-  String executeScriptAsync(String script);
+  String executeScriptAsync(String script, ExecPriority priority, String tenant,
+                            ExecLimits limits, long timeoutMs);
 
-  ExecInfo executeScript(String script, long timeout, TimeUnit timeUnit);
+  List<String> executeScriptsAsync(List<ExecSubmission> submissions, boolean atomic);
 
-  ExecInfo getExecutionStatus(String execId);
+  CompletableFuture<ExecInfo> executeScript(String script, ExecPriority priority, String tenant,
+                                            ExecLimits limits, long timeout, TimeUnit timeUnit);
+
+  ExecInfo getExecutionStatus(String execId, long offset);
+
+  CompletableFuture<ExecInfo> waitForExecutionStatus(String execId, long offset,
+                                                     long timeout, TimeUnit timeUnit);
+
+  List<Optional<ExecInfo>> getExecutionStatuses(List<String> execIds, boolean withOutput);
+
+  Resource getExecutionOutput(String execId);
+
+  OutputChunk readExecutionOutput(String execId, long offset, int limit);
 
   void cancelExecution(String execId);
 
   void deleteExecution(String execId);
 
-  List<String> getFinishedExecutionIds();
+  IdPage getFinishedExecutionIds(String cursor, int limit);
+
+  IdPage getExecutionIdsByStatus(Set<ExecStatus> statuses, String cursor, int limit);
 
-  List<String> getAllExecutionIds();
+  IdPage getAllExecutionIds(String cursor, int limit);
 }
@@ -3,18 +3,31 @@ package impl.service;
 import impl.repositories.ExecRepository;
 import impl.repositories.entities.Execution;
 import impl.service.dto.ExecInfo;
+import impl.service.dto.ExecSubmission;
+import impl.service.dto.IdPage;
+import impl.service.dto.OutputChunk;
 import impl.service.exceptions.DeletionException;
 import impl.service.exceptions.ExecTimeOutException;
+import impl.service.exceptions.InvalidCursorException;
 import impl.service.exceptions.UnknownIdException;
-import java.io.OutputStream;
+import impl.service.output.OutputBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -23,31 +36,73 @@ public class ScriptExecServiceImpl implements ScriptExecService{
   private final ExecRepository repo;
   private final ScriptExecutor executor;
 
-  public String executeScriptAsync(String script) {
-    Execution exec = executor.executeAsync(script);
-    return repo.addExecution(exec);
+  // Executions are added to the repository, and so journaled, once the queue has room for
+  // them and before they are queued; one the queue turns away never gets an id.
+  public String executeScriptAsync(String script, ExecPriority priority, String tenant,
+                                   ExecLimits limits, long timeoutMs) {
+    List<String> ids = new ArrayList<>(1);
+    executor.executeAsync(script, priority, tenant, limits, timeoutMs, exec -> ids.add(repo.addExecution(exec)));
+    return ids.get(0);
   }
 
-  @SneakyThrows
-  public ExecInfo executeScript(String script, long execTimeout, TimeUnit unit) {
-    try {
-      Execution exec = executor.execute(script, execTimeout, unit);
-      return new ExecInfo(
-            exec.getStatus().get().name(),
-            getOutput(exec.getOutputStream()));
-    } catch (TimeoutException ex) {
-      throw new ExecTimeOutException(execTimeout, unit);
+  // Ids follow the order of the submissions; those the queue did not admit get null.
+  public List<String> executeScriptsAsync(List<ExecSubmission> submissions, boolean atomic) {
+    List<String> ids = new ArrayList<>(submissions.size());
+    executor.executeAllAsync(submissions, atomic, execs -> ids.addAll(repo.addExecutions(execs)));
+    while (ids.size() < submissions.size()) {
+      ids.add(null);
     }
+    return ids;
+  }
+
+  public CompletableFuture<ExecInfo> executeScript(String script, ExecPriority priority, String tenant,
+                                                   ExecLimits limits, long execTimeout, TimeUnit unit) {
+    return executor.execute(script, priority, tenant, limits, execTimeout, unit)
+          .handle((exec, ex) -> {
+            if (ex == null) {
+              return getExecInfo(exec, 0);
+            }
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (cause instanceof TimeoutException) {
+              throw new ExecTimeOutException(execTimeout, unit);
+            }
+            throw new CompletionException(cause);
+          });
   }
 
-  public ExecInfo getExecutionStatus(String execId) {
+  public ExecInfo getExecutionStatus(String execId, long offset) {
     Execution exec = getExecOrThrow(execId);
-    return new ExecInfo(
-          exec.getStatus().get().name(),
-          getOutput(exec.getOutputStream()));
+    return getExecInfo(exec, offset);
+  }
+
+  // Completes with the status once the execution finishes, or with the status at the
+  // timeout; the output is read when the wait ends.
+  public CompletableFuture<ExecInfo> waitForExecutionStatus(String execId, long offset,
+                                                            long timeout, TimeUnit unit) {
+    Execution exec = getExecOrThrow(execId);
+    return executor.whenFinished(exec, timeout, unit)
+          .thenApply(finished -> getExecInfo(finished, offset));
+  }
+
+  // Entries follow the order of the ids and are empty for unknown ones. Without output
+  // only the status is filled in, so output buffers are not read.
+  // A null id is reported as unknown, like any other id without an execution.
+  public List<Optional<ExecInfo>> getExecutionStatuses(List<String> execIds, boolean withOutput) {
+    return execIds.stream()
+          .map(id -> Optional.ofNullable(id).flatMap(repo::getExecution).map(exec -> withOutput
+                ? getExecInfo(exec, 0)
+                : new ExecInfo(exec.getStatus().get().name(), null, false, false, 0)))
+          .collect(Collectors.toList());
+  }
+
+  public Resource getExecutionOutput(String execId) {
+    return getExecOrThrow(execId).getOutputStream().asResource();
+  }
+
+  public OutputChunk readExecutionOutput(String execId, long offset, int limit) {
+    return readOutput(getExecOrThrow(execId), offset, limit);
   }
 
-  @SneakyThrows
   public void cancelExecution(String execId) {
     Execution exec = getExecOrThrow(execId);
     executor.cancelExec(exec);
@@ -61,19 +116,112 @@ public class ScriptExecServiceImpl implements ScriptExecService{
     repo.removeExecution(execId);
   }
 
-  public List<String> getFinishedExecutionIds() {
-    return repo.getAllIds().stream()
-          .filter(id -> isDoneStatus(
-                getExecOrThrow(id).getStatus().get()))
+  // Finished executions are paged in the order they finished, not by id, so one submitted
+  // before the cursor but finished after it still turns up on a later page.
+  public IdPage getFinishedExecutionIds(String cursor, int limit) {
+    String after = decodeCursor(cursor);
+    NavigableMap<Long, String> finished = repo.getFinishedIds();
+    if (after != null) {
+      finished = finished.tailMap(parseFinishKey(cursor, after), false);
+    }
+    List<Map.Entry<Long, String>> entries = finished.entrySet().stream()
+          .limit(limit + 1L)
+          .collect(Collectors.toList());
+    List<String> ids = entries.stream().limit(limit).map(Map.Entry::getValue).collect(Collectors.toList());
+    return new IdPage(ids, entries.size() <= limit ? null
+          : encodeCursor(Long.toString(entries.get(limit - 1).getKey())));
+  }
+
+  public IdPage getExecutionIdsByStatus(Set<ExecStatus> statuses, String cursor, int limit) {
+    return page(statuses.stream()
+          .map(repo::getIdsByStatus)
+          .collect(Collectors.toList()), cursor, limit);
+  }
+
+  public IdPage getAllExecutionIds(String cursor, int limit) {
+    return page(List.of(repo.getAllIds()), cursor, limit);
+  }
+
+  // Ids are ordered by submission, so the cursor is just the last id returned:
+  // the next page continues strictly after it, whatever was added or removed since.
+  private IdPage page(List<NavigableSet<String>> sets, String cursor, int limit) {
+    String after = decodeCursor(cursor);
+    List<String> ids = sets.stream()
+          .flatMap(set -> (after == null ? set : set.tailSet(after, false)).stream()
+                .limit(limit + 1L))
+          .sorted()
+          .distinct()
+          .limit(limit + 1L)
           .collect(Collectors.toList());
+    if (ids.size() <= limit) {
+      return new IdPage(ids, null);
+    }
+    List<String> pageIds = ids.subList(0, limit);
+    return new IdPage(pageIds, encodeCursor(pageIds.get(limit - 1)));
+  }
+
+  private String encodeCursor(String id) {
+    return Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(id.getBytes(StandardCharsets.UTF_8));
   }
 
-  public List<String> getAllExecutionIds() {
-    return new ArrayList<>(repo.getAllIds());
+  private long parseFinishKey(String cursor, String decoded) {
+    try {
+      return Long.parseLong(decoded);
+    } catch (NumberFormatException ex) {
+      throw new InvalidCursorException(cursor);
+    }
   }
 
-  private String getOutput(OutputStream outputStream) {
-    return outputStream.toString();
+  private String decodeCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidCursorException(cursor);
+    }
+  }
+
+  private ExecInfo getExecInfo(Execution exec, long offset) {
+    OutputChunk chunk = readOutput(exec, offset, Integer.MAX_VALUE);
+    OutputBuffer output = exec.getOutputStream();
+    return new ExecInfo(
+          chunk.getStatus(),
+          chunk.getOutput(),
+          output.isTruncated(),
+          output.isSpilled(),
+          chunk.getOffset());
+  }
+
+  private OutputChunk readOutput(Execution exec, long offset, int limit) {
+    ExecStatus status = exec.getStatus().get();
+    OutputBuffer.Slice slice = exec.getOutputStream().read(offset, limit);
+    byte[] bytes = slice.getBytes();
+    boolean caughtUp = slice.getPosition() + bytes.length == slice.getEnd();
+    boolean finished = isDoneStatus(status) && caughtUp;
+    int len = finished ? bytes.length : completeCharsLength(bytes);
+    return new OutputChunk(
+          status.name(),
+          new String(bytes, 0, len, StandardCharsets.UTF_8),
+          slice.getPosition() + len,
+          finished);
+  }
+
+  // length of the longest prefix that does not end in the middle of a UTF-8 sequence
+  private int completeCharsLength(byte[] bytes) {
+    for (int i = bytes.length - 1; i >= Math.max(0, bytes.length - 4); i--) {
+      int b = bytes[i] & 0xFF;
+      if (b < 0x80) {
+        return bytes.length;
+      }
+      if (b >= 0xC0) {
+        int charLen = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+        return i + charLen <= bytes.length ? bytes.length : i;
+      }
+    }
+    return bytes.length;
   }
 
   private Execution getExecOrThrow(String execId) {
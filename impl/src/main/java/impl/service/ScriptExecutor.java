@@ -1,15 +1,30 @@
 package impl.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import impl.repositories.entities.ExecState;
 import impl.repositories.entities.Execution;
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStream;
+import impl.service.dto.ExecSubmission;
+import impl.service.exceptions.QueueFullException;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputBufferFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.PolyglotException;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,41 +32,174 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class ScriptExecutor {
-  private final ExecutorService executorService;
-  private final String lang;
+  private static final int DRAIN_RATE_WINDOW = 256;
+  private final ThreadPoolExecutor executorService;
+  private final ExecQueue queue;
+  private final SourceCache sourceCache;
+  private final ContextPool contextPool;
+  private final ResourceGuard guard;
+  private final DeadlineWatchdog watchdog;
+  private final ThreadPoolExecutor timeoutCanceller;
+  private final OutputBufferFactory outputFactory;
+  private final DrainRateEstimator drainRate = new DrainRateEstimator(DRAIN_RATE_WINDOW, System::nanoTime);
+  private final long maxRetryAfter;
+  private final long defaultTimeout;
+  private final Map<ExecPriority, Long> agingDelays = new EnumMap<>(ExecPriority.class);
+  private final Map<ExecPriority, Timer> waitTimers = new EnumMap<>(ExecPriority.class);
+  private final AtomicLong submitted = new AtomicLong();
+  private final Counter rejected;
+  private final Timer evalTimer;
+  private final Map<ExecStatus, Counter> finishedCounters = new EnumMap<>(ExecStatus.class);
+  private final Timer userCancellations;
+  private final Timer timeoutCancellations;
+  private final Timer limitCancellations;
 
   public ScriptExecutor(@Value("${executor.thread-count:}") Integer threadCount,
-                        @Value("${executor.lang}") String lang) {
-    this.executorService = Executors.newFixedThreadPool(threadCount);
-    this.lang = lang;
+                        @Value("${executor.queue.max-retry-after-s:60}") Long maxRetryAfter,
+                        @Value("${executor.queue.aging.normal-ms:1000}") Long normalAging,
+                        @Value("${executor.queue.aging.batch-ms:30000}") Long batchAging,
+                        @Value("${executor.timeout.default-ms:0}") Long defaultTimeout,
+                        ExecQueue queue,
+                        SourceCache sourceCache,
+                        ContextPool contextPool,
+                        ResourceGuard guard,
+                        DeadlineWatchdog watchdog,
+                        OutputBufferFactory outputFactory,
+                        MeterRegistry registry) {
+    this.executorService = new ThreadPoolExecutor(threadCount, threadCount,
+          0L, TimeUnit.MILLISECONDS,
+          queue);
+    this.queue = queue;
+    this.sourceCache = sourceCache;
+    this.contextPool = contextPool;
+    this.guard = guard;
+    this.watchdog = watchdog;
+    this.timeoutCanceller = new ThreadPoolExecutor(1, 1,
+          60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder()
+                .setNameFormat("timeout-cancel")
+                .setDaemon(true)
+                .build());
+    timeoutCanceller.allowCoreThreadTimeOut(true);
+    this.outputFactory = outputFactory;
+    this.maxRetryAfter = maxRetryAfter;
+    this.defaultTimeout = defaultTimeout;
+    agingDelays.put(ExecPriority.INTERACTIVE, 0L);
+    agingDelays.put(ExecPriority.NORMAL, TimeUnit.MILLISECONDS.toNanos(normalAging));
+    agingDelays.put(ExecPriority.BATCH, TimeUnit.MILLISECONDS.toNanos(batchAging));
+    for (ExecPriority priority : ExecPriority.values()) {
+      waitTimers.put(priority, Timer.builder("executor.queue.wait")
+            .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+            .publishPercentileHistogram()
+            .register(registry));
+    }
+    this.rejected = registry.counter("executor.queue.rejected");
+    registry.gauge("executor.queue.depth", queue, ExecQueue::size);
+    registry.gauge("executor.queue.drain.rate", drainRate, DrainRateEstimator::perSecond);
+    registry.gauge("executor.pool.active", executorService, ThreadPoolExecutor::getActiveCount);
+    registry.gauge("executor.pool.size", executorService, ThreadPoolExecutor::getMaximumPoolSize);
+    registry.gauge("executor.pool.saturation", executorService,
+          pool -> (double) pool.getActiveCount() / pool.getMaximumPoolSize());
+    this.evalTimer = Timer.builder("executor.eval")
+          .publishPercentileHistogram()
+          .register(registry);
+    for (ExecStatus status : ExecStatus.FINISHED) {
+      finishedCounters.put(status, registry.counter("executor.executions.finished",
+            "status", status.name().toLowerCase(Locale.ROOT)));
+    }
+    this.userCancellations = cancellationTimer(registry, "user");
+    this.timeoutCancellations = cancellationTimer(registry, "timeout");
+    this.limitCancellations = cancellationTimer(registry, "limit");
+  }
+
+  // From the cancel request until the execution completes.
+  private static Timer cancellationTimer(MeterRegistry registry, String reason) {
+    return Timer.builder("executor.cancellation.latency")
+          .tag("reason", reason)
+          .publishPercentileHistogram()
+          .register(registry);
   }
 
   public Execution executeAsync(String script) {
-    throwIfPoolIsShutdown();
-    AtomicReference<ExecStatus> status = new AtomicReference<>(ExecStatus.QUEUE);
-    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();   //  has sync methods and is to be closed by GC
-    CompletableFuture<Runnable> ctCreation = new CompletableFuture<>();
-    CompletableFuture<Void> comp = CompletableFuture.runAsync(
-                () -> runScript(script, outputStream, status, ctCreation),
-          executorService);
-    return new Execution(status, outputStream, comp, ctCreation);
+    return executeAsync(script, ExecPriority.NORMAL, ExecQueue.DEFAULT_TENANT, ExecLimits.NONE, 0);
   }
 
-  public Execution execute(String script, long execTimeout, TimeUnit unit)
-        throws ExecutionException, InterruptedException, TimeoutException {
+  // A timeout of zero or less falls back to executor.timeout.default-ms; the deadline
+  // counts from submission, so it covers the time spent in the queue.
+  public Execution executeAsync(String script, ExecPriority priority, String tenant,
+                                ExecLimits limits, long timeoutMs) {
+    return executeAsync(script, priority, tenant, limits, timeoutMs, exec -> { });
+  }
+
+  // The execution is handed to beforeQueueing, e.g. to be journaled, once the queue has room
+  // for it and before it is queued; if that throws, the execution is dropped and never runs.
+  // One the queue turns away is never created, so beforeQueueing does not see it.
+  public Execution executeAsync(String script, ExecPriority priority, String tenant,
+                                ExecLimits limits, long timeoutMs, Consumer<Execution> beforeQueueing) {
+    return submit(script, priority, tenant, limits, timeoutMs > 0 ? timeoutMs : defaultTimeout,
+          beforeQueueing);
+  }
+
+  public List<Execution> executeAllAsync(List<ExecSubmission> submissions, boolean atomic) {
+    return executeAllAsync(submissions, atomic, executions -> { });
+  }
+
+  // Enqueues the submissions with one admission decision and returns the executions of
+  // those admitted, in order. When atomic, either the whole batch is admitted or none of it;
+  // otherwise the submissions that do not fit are dropped from the end. The admitted
+  // executions are handed to beforeQueueing first; if that throws, none of them is queued.
+  public List<Execution> executeAllAsync(List<ExecSubmission> submissions, boolean atomic,
+                                         Consumer<List<Execution>> beforeQueueing) {
+    return admit(submissions.stream()
+          .map(sub -> new ExecSubmission(sub.getScript(), sub.getPriority(), sub.getTenant(), sub.getLimits(),
+                sub.getTimeoutMs() > 0 ? sub.getTimeoutMs() : defaultTimeout))
+          .collect(Collectors.toList()), atomic, beforeQueueing);
+  }
+
+  // Completes with the execution once it finishes, or exceptionally with TimeoutException
+  // after cancelling it. Cancelling waits for the script to stop, so the timeout sits on the
+  // deadline wheel and the cancel runs on the timeout canceller, not on a shared JDK timer.
+  public CompletableFuture<Execution> execute(String script, ExecPriority priority, String tenant,
+                                              ExecLimits limits, long execTimeout, TimeUnit unit) {
     throwIfPoolIsShutdown();
-    Execution exec = executeAsync(script);
-    try {
-      exec.getComputation().get(execTimeout, unit);
-      return exec;
-    } catch (TimeoutException ex) {
-      cancelExec(exec);
-      throw ex;
-    }
+    Execution exec = submit(script, priority, tenant, limits, 0, execution -> { });
+    CompletableFuture<Execution> result = new CompletableFuture<>();
+    DeadlineWatchdog.Deadline deadline = watchdog.schedule(execTimeout, unit, onTimeout(() -> {
+      cancel(exec.getStatus(), exec.getComputation(), ExecStatus.CANCELLED, timeoutCancellations);
+      result.completeExceptionally(new TimeoutException());
+    }));
+    exec.getComputation().whenComplete((res, ex) -> {
+      if (!deadline.cancel()) {
+        return;  // timed out, the deadline completes the result
+      }
+      if (ex == null) {
+        result.complete(exec);
+      } else {
+        result.completeExceptionally(ex);
+      }
+    });
+    return result;
+  }
+
+  public void cancelExec(Execution exec) {
+    cancel(exec.getStatus(), exec.getComputation(), ExecStatus.CANCELLED, userCancellations);
   }
 
-  public void cancelExec(Execution exec) throws ExecutionException, InterruptedException {
-    cancel(exec.getCtCreation());
+  // Completes with the execution once it finishes or once the timeout passes, whichever
+  // comes first. Nothing blocks while waiting; the timeout sits on the deadline wheel.
+  public CompletableFuture<Execution> whenFinished(Execution exec, long timeout, TimeUnit unit) {
+    CompletableFuture<Execution> result = new CompletableFuture<>();
+    if (exec.getComputation().isDone()) {
+      result.complete(exec);
+      return result;
+    }
+    DeadlineWatchdog.Deadline deadline = watchdog.schedule(timeout, unit, () -> result.complete(exec));
+    exec.getComputation().whenComplete((res, ex) -> {
+      deadline.cancel();
+      result.complete(exec);
+    });
+    return result;
   }
 
   public void awaitTermination(Execution exec, long execTimeout, TimeUnit unit)
@@ -59,6 +207,7 @@ public class ScriptExecutor {
     exec.getComputation().get(execTimeout, unit);
   }
 
+  @PreDestroy
   public void shutdown() {
     executorService.shutdown();
   }
@@ -71,55 +220,156 @@ public class ScriptExecutor {
     return executorService.awaitTermination(timeout, timeUnit);
   }
 
-  private void runScript(String script,
-                         OutputStream stream,
-                         AtomicReference<ExecStatus> status,
-                         CompletableFuture<Runnable> ctCreation) {
-    status.set(ExecStatus.RUNNING);
-    try (Context context = createContext(stream)) {
-      checkCancelAndComplete(ctCreation, context);
-      context.eval(lang, script);
-      status.set(ExecStatus.DONE);
-    } catch (PolyglotException ex) {
-      if(ex.getMessage().contains("SyntaxError")) {
-        status.set(ExecStatus.DONE_WITH_SYNTAX_ERROR);
-      } else if(ex.getMessage().contains("Execution got cancelled")) {
-        status.set(ExecStatus.CANCELLED);
-      } else {
-        status.set(ExecStatus.DONE_WITH_EXCEPTION);
+  private Execution submit(String script, ExecPriority priority, String tenant,
+                           ExecLimits limits, long timeoutMs, Consumer<Execution> beforeQueueing) {
+    throwIfPoolIsShutdown();
+    return admit(List.of(new ExecSubmission(script, priority, tenant, limits, timeoutMs)), true,
+          executions -> beforeQueueing.accept(executions.get(0))).get(0);
+  }
+
+  // Room in the queue is reserved before anything else, so an execution handed to
+  // beforeQueueing, and so journaled, is certain to be queued, and the submissions that do
+  // not fit leave no trace beyond the rejection count.
+  private List<Execution> admit(List<ExecSubmission> submissions, boolean atomic,
+                                Consumer<List<Execution>> beforeQueueing) {
+    throwIfPoolIsShutdown();
+    int admitted = queue.reserve(submissions.size(), atomic);
+    rejected.increment(submissions.size() - admitted);
+    if (admitted == 0 && !submissions.isEmpty()) {
+      throw queueFull();
+    }
+    List<PendingExec> pending = new ArrayList<>(admitted);
+    try {
+      for (ExecSubmission sub : submissions.subList(0, admitted)) {
+        pending.add(new PendingExec(sub.getScript(), sub.getPriority(), sub.getTenant(), sub.getLimits(),
+              sub.getTimeoutMs()));
       }
-    } catch (IllegalStateException ex) {
-      status.set(ExecStatus.CANCELLED);
+      beforeQueueing.accept(pending.stream().map(exec -> exec.execution).collect(Collectors.toList()));
+    } catch (RuntimeException ex) {
+      queue.release(admitted);
+      pending.forEach(PendingExec::release);
+      throw ex;
     }
+    queue.fill(pending.stream().map(exec -> exec.task).collect(Collectors.toList()));
+    executorService.prestartAllCoreThreads();  // tasks only reach the workers through the queue
+    return pending.stream().map(PendingExec::start).collect(Collectors.toList());
   }
 
-  private void checkCancelAndComplete(CompletableFuture<Runnable> ctCreation,
-                                      Context context) {
-    synchronized (ctCreation) {
-      if(ctCreation.isCancelled()){
-        throw new IllegalStateException();
-      } else {
-        ctCreation.complete(() -> context.close(true));
-      }
+  // Deadlines expire on a single watchdog thread that also ends long polls, and closing a
+  // running context waits for the script to stop, so the cancel is handed on.
+  private Runnable onTimeout(Runnable cancel) {
+    return () -> timeoutCanceller.execute(cancel);
+  }
+
+  private QueueFullException queueFull() {
+    return new QueueFullException(drainRate.secondsToDrain(queue.size(), maxRetryAfter));
+  }
+
+  // A queued execution leaves the queue and completes here, without a context; a running
+  // one is interrupted and completed by its worker. Only the first cancel is timed.
+  private void cancel(ExecState state, CompletableFuture<Void> comp, ExecStatus as, Timer timer) {
+    long start = System.nanoTime();
+    ExecStatus from = state.cancel(as);
+    if (from == null) {
+      return;
+    }
+    comp.whenComplete((res, ex) -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    if (from == ExecStatus.QUEUE) {
+      drainRate.recordCompletion();
+      comp.complete(null);
     }
   }
 
-  private void cancel(CompletableFuture<Runnable> ctCreation)
-        throws ExecutionException, InterruptedException {
-    synchronized (ctCreation) {
-      if(!ctCreation.isCancelled()) {
-        if (ctCreation.isDone()) {
-          ctCreation.get().run();
+  // An execution that is built but not yet in the queue; start() arms its deadline.
+  private class PendingExec {
+    private final ExecState status = new ExecState(ExecStatus.QUEUE, this::dequeue);
+    private final OutputBuffer outputStream = outputFactory.create();
+    private final CompletableFuture<Void> comp = new CompletableFuture<>();
+    private final long timeoutMs;
+    private final Execution execution;
+    private final QueuedTask task;
+
+    private PendingExec(String script, ExecPriority priority, String tenant, ExecLimits limits,
+                        long timeoutMs) {
+      this.timeoutMs = timeoutMs;
+      this.execution = new Execution(status, outputStream, comp,
+            new ExecSubmission(script, priority, tenant, limits, timeoutMs));
+      ExecLimits effectiveLimits = guard.effective(limits);
+      String owner = tenant == null ? ExecQueue.DEFAULT_TENANT : tenant;
+      this.task = new QueuedTask(owner, priority, System.nanoTime(), agingDelays.get(priority),
+            submitted.incrementAndGet(), waitTimers.get(priority), queue, () -> {
+        if (!status.start()) {
+          return;  // cancelled while queued and already completed
         }
-        ctCreation.cancel(true);
+        try {
+          run(script, effectiveLimits);
+          comp.complete(null);
+        } catch (Throwable ex) {
+          comp.completeExceptionally(ex);
+        }
+      });
+    }
+
+    private void run(String script, ExecLimits limits) {
+      ResourceGuard.Watch watch = guard.watch(limits,
+            () -> cancel(status, comp, ExecStatus.LIMIT_EXCEEDED, limitCancellations));
+      try (Context context = contextPool.acquire(outputStream, limits.getStatements())) {
+        if (!status.attach(() -> context.close(true))) {
+          status.finish(cancelledStatus(watch));
+          return;
+        }
+        evalTimer.record(() -> context.eval(sourceCache.get(script)));
+        status.finish(ExecStatus.DONE);
+      } catch (PolyglotException ex) {
+        if(ex.getMessage().contains("SyntaxError")) {
+          status.finish(ExecStatus.DONE_WITH_SYNTAX_ERROR);
+        } else if(ex.isCancelled()) {
+          status.finish(cancelledStatus(watch));
+        } else {
+          status.finish(ExecStatus.DONE_WITH_EXCEPTION);
+        }
+      } catch (IllegalStateException ex) {
+        status.finish(cancelledStatus(watch));
+      } finally {
+        watch.close();
+        drainRate.recordCompletion();
       }
     }
-  }
 
-  private Context createContext(OutputStream outputStream) {
-    return Context.newBuilder(lang)
-          .out(outputStream)
-          .build();
+    private ExecStatus cancelledStatus(ResourceGuard.Watch watch) {
+      if (watch.isExceeded()) {
+        return ExecStatus.LIMIT_EXCEEDED;
+      }
+      ExecStatus as = status.getCancelledAs();
+      return as != null ? as : ExecStatus.CANCELLED;
+    }
+
+    private Execution start() {
+      if (timeoutMs > 0) {
+        DeadlineWatchdog.Deadline deadline = watchdog.schedule(timeoutMs, TimeUnit.MILLISECONDS,
+              onTimeout(() -> cancel(status, comp, ExecStatus.TIMED_OUT, timeoutCancellations)));
+        comp.whenComplete((res, ex) -> deadline.cancel());
+      }
+      comp.whenComplete((res, ex) -> {
+        Counter finished = finishedCounters.get(status.get());
+        if (finished != null) {
+          finished.increment();
+        }
+      });
+      return execution;
+    }
+
+    // For an execution that was never queued: it ends cancelled, as others may already hold it,
+    // and its output is given back.
+    private void release() {
+      status.cancel(ExecStatus.CANCELLED);
+      comp.complete(null);
+      outputStream.release();
+    }
+
+    private void dequeue() {
+      queue.remove(task);
+    }
   }
 
   private void throwIfPoolIsShutdown() {
@@ -0,0 +1,67 @@
+package impl.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import lombok.SneakyThrows;
+import org.graalvm.polyglot.Source;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SourceCache {
+  private final Cache<HashCode, Source> cache;
+  private final String lang;
+
+  public enum EvictionPolicy {
+    COUNT,    // max-size limits the number of cached sources
+    WEIGHT    // max-size limits the total length of cached scripts
+  }
+
+  public SourceCache(@Value("${executor.lang}") String lang,
+                     @Value("${executor.source-cache.policy:COUNT}") EvictionPolicy policy,
+                     @Value("${executor.source-cache.max-size:1000}") Long maxSize,
+                     MeterRegistry registry) {
+    this.lang = lang;
+    this.cache = GuavaCacheMetrics.monitor(registry, buildCache(policy, maxSize), "executor.sources");
+  }
+
+  @SneakyThrows(ExecutionException.class)
+  public Source get(String script) {
+    HashCode key = Hashing.sha256().hashString(script, StandardCharsets.UTF_8);
+    return cache.get(key, () -> createSource(script, key));
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  private Source createSource(String script, HashCode key) {
+    return Source.newBuilder(lang, script, "script-" + key)
+          .cached(true)
+          .buildLiteral();
+  }
+
+  private static Cache<HashCode, Source> buildCache(EvictionPolicy policy, long maxSize) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (policy == EvictionPolicy.WEIGHT) {
+      return builder
+            .maximumWeight(maxSize)
+            .weigher((HashCode key, Source source) -> source.getLength())
+            .build();
+    }
+    return builder
+          .maximumSize(maxSize)
+          .build();
+  }
+}
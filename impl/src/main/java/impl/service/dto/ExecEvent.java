@@ -0,0 +1,13 @@
+package impl.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class ExecEvent {
+  private final long seq;
+  private final String execId;
+  private final String type;
+  private final long timestamp;
+}
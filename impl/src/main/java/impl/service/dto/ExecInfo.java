@@ -8,4 +8,7 @@ import lombok.Getter;
 public class ExecInfo {
   private final String status;
   private final String output;
+  private final boolean truncated;
+  private final boolean spilled;
+  private final long offset;
 }
@@ -0,0 +1,18 @@
+package impl.service.dto;
+
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@AllArgsConstructor
+@EqualsAndHashCode
+@Getter
+public class ExecSubmission {
+  private final String script;
+  private final ExecPriority priority;
+  private final String tenant;
+  private final ExecLimits limits;
+  private final long timeoutMs;
+}
@@ -0,0 +1,12 @@
+package impl.service.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class IdPage {
+  private final List<String> ids;
+  private final String nextCursor;
+}
@@ -0,0 +1,13 @@
+package impl.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class OutputChunk {
+  private final String status;
+  private final String output;
+  private final long offset;
+  private final boolean finished;
+}
@@ -0,0 +1,11 @@
+package impl.service.exceptions;
+
+public class BatchTooLargeException extends RuntimeException {
+  public BatchTooLargeException(int size, int maxSize) {
+    super(generateMessage(size, maxSize));
+  }
+
+  public static String generateMessage(int size, int maxSize) {
+    return "Batch is too large, size: " + size + ", max size: " + maxSize;
+  }
+}
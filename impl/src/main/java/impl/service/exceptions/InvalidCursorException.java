@@ -0,0 +1,11 @@
+package impl.service.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+  public InvalidCursorException(String cursor) {
+    super(generateMessage(cursor));
+  }
+
+  public static String generateMessage(String cursor) {
+    return "Invalid cursor, cursor: " + cursor;
+  }
+}
@@ -0,0 +1,11 @@
+package impl.service.exceptions;
+
+public class InvalidTimeoutException extends RuntimeException {
+  public InvalidTimeoutException(long timeoutMs, long maxTimeoutMs) {
+    super(generateMessage(timeoutMs, maxTimeoutMs));
+  }
+
+  public static String generateMessage(long timeoutMs, long maxTimeoutMs) {
+    return "Invalid timeoutMs: " + timeoutMs + ", expected 0 to " + maxTimeoutMs;
+  }
+}
@@ -0,0 +1,11 @@
+package impl.service.exceptions;
+
+public class InvalidWaitException extends RuntimeException {
+  public InvalidWaitException(String param, String value) {
+    super(generateMessage(param, value));
+  }
+
+  public static String generateMessage(String param, String value) {
+    return "Invalid wait parameter, " + param + ": " + value;
+  }
+}
@@ -0,0 +1,17 @@
+package impl.service.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class QueueFullException extends RuntimeException {
+  private final long retryAfter;
+
+  public QueueFullException(long retryAfter) {
+    super(generateMessage(retryAfter));
+    this.retryAfter = retryAfter;
+  }
+
+  public static String generateMessage(long retryAfter) {
+    return "Execution queue is full, retry after " + retryAfter + " s";
+  }
+}
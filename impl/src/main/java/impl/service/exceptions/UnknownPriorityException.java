@@ -0,0 +1,11 @@
+package impl.service.exceptions;
+
+public class UnknownPriorityException extends RuntimeException {
+  public UnknownPriorityException(String priority) {
+    super(generateMessage(priority));
+  }
+
+  public static String generateMessage(String priority) {
+    return "There is no such priority, priority: " + priority;
+  }
+}
@@ -0,0 +1,129 @@
+package impl.service.output;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Output of a finished execution in one exactly sized buffer. When compressed it is split into
+// blocks deflated on their own, so a read inflates only the blocks it covers.
+final class ArchivedOutput {
+  static final int BLOCK_SIZE = 64 * 1024;
+
+  private final ByteBuffer data;
+  private final int[] blockEnds;  // end of every compressed block in data, null if stored as is
+  private final int length;
+
+  private ArchivedOutput(ByteBuffer data, int[] blockEnds, int length) {
+    this.data = data;
+    this.blockEnds = blockEnds;
+    this.length = length;
+  }
+
+  // Compressed content is kept only if it is smaller. Off heap memory that cannot be
+  // allocated leaves the content on the heap.
+  static ArchivedOutput of(byte[] content, boolean compress, boolean offHeap) {
+    byte[] stored = content;
+    int[] blockEnds = null;
+    if (compress && content.length > 0) {
+      byte[] deflated = new byte[content.length];
+      int[] ends = new int[(content.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+      if (deflate(content, deflated, ends)) {
+        stored = Arrays.copyOf(deflated, ends[ends.length - 1]);
+        blockEnds = ends;
+      }
+    }
+    ByteBuffer data = null;
+    if (offHeap) {
+      try {
+        data = ByteBuffer.allocateDirect(stored.length);
+      } catch (OutOfMemoryError ex) {
+        data = null;
+      }
+    }
+    if (data == null) {
+      data = ByteBuffer.allocate(stored.length);
+    }
+    data.put(stored).flip();
+    return new ArchivedOutput(data, blockEnds, content.length);
+  }
+
+  int length() {
+    return length;
+  }
+
+  int storedBytes() {
+    return data.capacity();
+  }
+
+  boolean isOffHeap() {
+    return data.isDirect();
+  }
+
+  void read(long from, byte[] dst) {
+    if (blockEnds == null) {
+      data.duplicate().position((int) from).get(dst);
+      return;
+    }
+    Inflater inflater = new Inflater();
+    try {
+      byte[] block = new byte[BLOCK_SIZE + 1];  // room for the inflater to see the end of a full block
+      int pos = 0;
+      for (int i = (int) (from / BLOCK_SIZE); pos < dst.length; i++) {
+        int blockLen = inflate(inflater, i, block);
+        int skip = i == from / BLOCK_SIZE ? (int) (from % BLOCK_SIZE) : 0;
+        int n = Math.min(blockLen - skip, dst.length - pos);
+        System.arraycopy(block, skip, dst, pos, n);
+        pos += n;
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private int inflate(Inflater inflater, int index, byte[] block) {
+    int start = index == 0 ? 0 : blockEnds[index - 1];
+    byte[] compressed = new byte[blockEnds[index] - start];
+    data.duplicate().position(start).get(compressed);
+    inflater.reset();
+    inflater.setInput(compressed);
+    try {
+      int n = 0;
+      while (!inflater.finished()) {
+        int inflated = inflater.inflate(block, n, block.length - n);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary() || n == block.length)) {
+          throw new IllegalStateException("Archived output is corrupt");
+        }
+        n += inflated;
+      }
+      return n;
+    } catch (DataFormatException ex) {
+      throw new IllegalStateException("Archived output is corrupt", ex);
+    }
+  }
+
+  // Returns false once the compressed blocks would not be smaller than the content.
+  private static boolean deflate(byte[] content, byte[] dst, int[] blockEnds) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      int pos = 0;
+      for (int i = 0; i < blockEnds.length; i++) {
+        int off = i * BLOCK_SIZE;
+        deflater.reset();
+        deflater.setInput(content, off, Math.min(BLOCK_SIZE, content.length - off));
+        deflater.finish();
+        while (!deflater.finished()) {
+          if (pos == dst.length) {
+            return false;
+          }
+          pos += deflater.deflate(dst, pos, dst.length - pos);
+        }
+        blockEnds[i] = pos;
+      }
+      return pos < content.length;
+    } finally {
+      deflater.end();
+    }
+  }
+}
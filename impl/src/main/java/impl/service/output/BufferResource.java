@@ -0,0 +1,93 @@
+package impl.service.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.core.io.AbstractResource;
+
+// Exposes a snapshot of an in-memory buffer as a resource. The stream reads slices on demand
+// and skips without copying, so serving a byte range never materialises the whole output.
+class BufferResource extends AbstractResource {
+  private static final int READ_SIZE = 8192;
+
+  private final OutputBuffer buffer;
+  private final long start;
+  private final long end;
+
+  BufferResource(OutputBuffer buffer, long start, long end) {
+    this.buffer = buffer;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public long contentLength() {
+    return end - start;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Execution output [" + start + ", " + end + ")";
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new InputStream() {
+      private long position = start;
+      private byte[] chunk = new byte[0];
+      private int chunkPos;
+
+      @Override
+      public int read() throws IOException {
+        if (!fill()) {
+          return -1;
+        }
+        return chunk[chunkPos++] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        if (!fill()) {
+          return -1;
+        }
+        int n = Math.min(len, chunk.length - chunkPos);
+        System.arraycopy(chunk, chunkPos, b, off, n);
+        chunkPos += n;
+        return n;
+      }
+
+      @Override
+      public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, available()));
+        long inChunk = Math.min(skipped, chunk.length - chunkPos);
+        chunkPos += inChunk;
+        position += skipped - inChunk;
+        return skipped;
+      }
+
+      @Override
+      public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position + chunk.length - chunkPos);
+      }
+
+      private boolean fill() throws IOException {
+        if (chunkPos < chunk.length) {
+          return true;
+        }
+        if (position >= end) {
+          return false;
+        }
+        OutputBuffer.Slice slice = buffer.read(position, (int) Math.min(READ_SIZE, end - position));
+        if (slice.getPosition() != position) {
+          throw new IOException("Output was truncated while being read");
+        }
+        chunk = slice.getBytes();
+        chunkPos = 0;
+        position += chunk.length;
+        return chunk.length > 0;
+      }
+    };
+  }
+}
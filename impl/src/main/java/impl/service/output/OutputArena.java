@@ -0,0 +1,68 @@
+package impl.service.output;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Where output lives once its execution has finished: exactly sized, optionally compressed,
+// and off the heap when larger than offheap-min-bytes, so thousands of retained results give
+// the collector little to scan or copy. It also counts the heap taken by the chunks of
+// buffers still being written, so heap and off-heap output can be compared.
+@Component
+public class OutputArena {
+  private final boolean enabled;
+  private final boolean compress;
+  private final int offHeapMinBytes;
+  private final AtomicLong chunkBytes = new AtomicLong();
+  private final AtomicLong archivedHeapBytes = new AtomicLong();
+  private final AtomicLong archivedOffHeapBytes = new AtomicLong();
+  private final AtomicLong archivedRawBytes = new AtomicLong();
+
+  public OutputArena(@Value("${executor.output.archive.enabled:true}") Boolean enabled,
+                     @Value("${executor.output.archive.compress:false}") Boolean compress,
+                     @Value("${executor.output.archive.offheap-min-bytes:1024}") Integer offHeapMinBytes,
+                     MeterRegistry registry) {
+    this.enabled = enabled;
+    this.compress = compress;
+    this.offHeapMinBytes = offHeapMinBytes;
+    registry.gauge("executor.output.memory.bytes", Tags.of("area", "heap"), this, OutputArena::getHeapBytes);
+    registry.gauge("executor.output.memory.bytes", Tags.of("area", "offheap"), this, OutputArena::getOffHeapBytes);
+    registry.gauge("executor.output.archived.bytes", archivedRawBytes, AtomicLong::get);
+  }
+
+  public long getHeapBytes() {
+    return chunkBytes.get() + archivedHeapBytes.get();
+  }
+
+  public long getOffHeapBytes() {
+    return archivedOffHeapBytes.get();
+  }
+
+  // Size of the archived output before compression.
+  public long getArchivedBytes() {
+    return archivedRawBytes.get();
+  }
+
+  // Chunks taken, or given back when negative, by buffers still in memory.
+  void allocated(long bytes) {
+    chunkBytes.addAndGet(bytes);
+  }
+
+  // Null when archiving is off, and the buffer keeps its chunks.
+  ArchivedOutput archive(byte[] content) {
+    if (!enabled) {
+      return null;
+    }
+    ArchivedOutput archived = ArchivedOutput.of(content, compress, content.length >= offHeapMinBytes);
+    (archived.isOffHeap() ? archivedOffHeapBytes : archivedHeapBytes).addAndGet(archived.storedBytes());
+    archivedRawBytes.addAndGet(archived.length());
+    return archived;
+  }
+
+  void free(ArchivedOutput archived) {
+    (archived.isOffHeap() ? archivedOffHeapBytes : archivedHeapBytes).addAndGet(-archived.storedBytes());
+    archivedRawBytes.addAndGet(-archived.length());
+  }
+}
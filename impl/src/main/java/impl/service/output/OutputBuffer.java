@@ -0,0 +1,351 @@
+package impl.service.output;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+public class OutputBuffer extends OutputStream {
+  private static final int CHUNK_SIZE = 8192;
+
+  private final OutputPolicy policy;
+  private final long maxBytes;
+  private final long memoryThreshold;
+  private final Path spillDir;
+  private final RateLimiter throttle;
+  private final OutputArena arena;
+  private final Deque<byte[]> chunks = new ArrayDeque<>();   // fixed-size chunks, so growth never copies
+  private int headOffset;                                    // bytes dropped from the first chunk
+  private int tailOffset = CHUNK_SIZE;                       // bytes used in the last chunk
+  private long size;
+  private long end;                                          // position after the last written byte
+  private boolean truncated;
+  private boolean released;
+  private boolean sealed;                                    // archived, later writes are ignored
+  private Path spillFile;
+  private FileChannel spillChannel;                          // null once sealed, reads reopen the file
+  private ArchivedOutput archived;
+
+  public OutputBuffer(OutputPolicy policy,
+                      long maxBytes,
+                      long memoryThreshold,
+                      Path spillDir,
+                      RateLimiter throttle) {
+    this(policy, maxBytes, memoryThreshold, spillDir, throttle, null);
+  }
+
+  public OutputBuffer(OutputPolicy policy,
+                      long maxBytes,
+                      long memoryThreshold,
+                      Path spillDir,
+                      RateLimiter throttle,
+                      OutputArena arena) {
+    this.policy = policy;
+    this.maxBytes = maxBytes;
+    this.memoryThreshold = memoryThreshold;
+    this.spillDir = spillDir;
+    this.throttle = throttle;
+    this.arena = arena;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (throttle != null) {
+      throttle.acquire();
+    }
+    append(b, off, len);
+  }
+
+  public synchronized long size() {
+    return size;
+  }
+
+  public synchronized boolean isTruncated() {
+    return truncated;
+  }
+
+  public synchronized boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  public synchronized boolean isArchived() {
+    return archived != null;
+  }
+
+  public synchronized long end() {
+    return end;
+  }
+
+  public synchronized byte[] toByteArray() {
+    byte[] res = new byte[(int) size];
+    copy(0, res);
+    return res;
+  }
+
+  // Reads up to limit bytes starting at the given stream position. Positions count every byte
+  // accepted by the buffer, so a reader can continue from the end of its previous slice.
+  public synchronized Slice read(long position, int limit) {
+    long start = end - size;
+    long from = Math.max(position, start);
+    byte[] res = new byte[(int) Math.max(0, Math.min(limit, end - from))];
+    copy(from - start, res);
+    return new Slice(from, res, end);
+  }
+
+  public synchronized Resource asResource() {
+    return spillFile != null
+          ? new FileSystemResource(spillFile)
+          : new BufferResource(this, end - size, end);
+  }
+
+  @Override
+  public String toString() {
+    return new String(toByteArray(), Charset.defaultCharset());
+  }
+
+  // Moves the content of a buffer that will not be written any more into the arena. Later
+  // writes are ignored. Spilled output already lives outside the heap and stays in its file,
+  // but its channel is closed, so retained executions do not each hold a file descriptor.
+  public synchronized void archive() {
+    if (released || sealed) {
+      return;
+    }
+    if (spillFile != null) {
+      sealed = true;
+      try {
+        spillChannel.close();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      } finally {
+        spillChannel = null;
+      }
+      return;
+    }
+    ArchivedOutput res = arena == null ? null : arena.archive(toByteArray());
+    if (res != null) {
+      long kept = size;
+      clearMemory();
+      size = kept;
+      archived = res;
+      sealed = true;
+    }
+  }
+
+  public synchronized void release() {
+    released = true;
+    clearMemory();
+    if (archived != null) {
+      arena.free(archived);
+      archived = null;
+    }
+    if (spillFile != null) {
+      try {
+        try {
+          if (spillChannel != null) {
+            spillChannel.close();
+          }
+        } finally {
+          Files.deleteIfExists(spillFile);
+        }
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  private synchronized void append(byte[] b, int off, int len) throws IOException {
+    if (released || sealed) {
+      return;
+    }
+    if (size + len > maxBytes) {
+      truncated = true;
+      if (policy == OutputPolicy.TRUNCATE_HEAD) {
+        if (len >= maxBytes) {
+          clearMemory();
+          end += len - maxBytes;
+          off += len - (int) maxBytes;
+          len = (int) maxBytes;
+        }
+      } else {
+        len = (int) (maxBytes - size);
+      }
+    }
+    if (policy == OutputPolicy.SPILL && spillFile == null && size + len > memoryThreshold) {
+      spill();
+    }
+    end += len;
+    if (spillFile != null) {
+      appendToFile(b, off, len);
+    } else {
+      appendToMemory(b, off, len);
+      if (size > maxBytes) {
+        dropHead(size - maxBytes);
+      }
+    }
+  }
+
+  private void appendToMemory(byte[] b, int off, int len) {
+    size += len;
+    while (len > 0) {
+      if (tailOffset == CHUNK_SIZE) {
+        chunks.addLast(new byte[CHUNK_SIZE]);
+        account(CHUNK_SIZE);
+        tailOffset = 0;
+      }
+      int n = Math.min(len, CHUNK_SIZE - tailOffset);
+      System.arraycopy(b, off, chunks.getLast(), tailOffset, n);
+      tailOffset += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  private void dropHead(long count) {
+    size -= count;
+    while (count > 0) {
+      int n = (int) Math.min(count, chunkEnd(chunks.getFirst()) - headOffset);
+      headOffset += n;
+      count -= n;
+      if (headOffset == chunkEnd(chunks.getFirst())) {
+        chunks.removeFirst();
+        account(-CHUNK_SIZE);
+        headOffset = 0;
+      }
+    }
+    if (chunks.isEmpty()) {
+      tailOffset = CHUNK_SIZE;
+    }
+  }
+
+  private void copy(long from, byte[] dst) {
+    if (archived != null) {
+      archived.read(from, dst);
+      return;
+    }
+    if (spillFile != null) {
+      readSpillFile(from, dst);
+      return;
+    }
+    long skip = from + headOffset;
+    int pos = 0;
+    for (byte[] chunk : chunks) {
+      if (pos == dst.length) {
+        break;
+      }
+      int chunkLen = chunkEnd(chunk);
+      if (skip >= chunkLen) {
+        skip -= chunkLen;
+        continue;
+      }
+      int len = Math.min(chunkLen - (int) skip, dst.length - pos);
+      System.arraycopy(chunk, (int) skip, dst, pos, len);
+      pos += len;
+      skip = 0;
+    }
+  }
+
+  private int chunkEnd(byte[] chunk) {
+    return chunk == chunks.getLast() ? tailOffset : CHUNK_SIZE;
+  }
+
+  private void clearMemory() {
+    account(-(long) chunks.size() * CHUNK_SIZE);
+    chunks.clear();
+    headOffset = 0;
+    tailOffset = CHUNK_SIZE;
+    size = 0;
+  }
+
+  private void account(long bytes) {
+    if (arena != null) {
+      arena.allocated(bytes);
+    }
+  }
+
+  // The buffer moves to the file only once its content is there; if anything fails on the
+  // way, the file is deleted and the content stays in memory.
+  private void spill() throws IOException {
+    byte[] content = toByteArray();
+    Path file = Files.createTempFile(spillDir, "exec-", ".out");
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      ByteBuffer buffer = ByteBuffer.wrap(content);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, buffer.position());
+      }
+    } catch (IOException | RuntimeException ex) {
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+        Files.deleteIfExists(file);
+      } catch (IOException cleanup) {
+        ex.addSuppressed(cleanup);
+      }
+      throw ex;
+    }
+    clearMemory();
+    size = content.length;
+    spillFile = file;
+    spillChannel = channel;
+  }
+
+  private void appendToFile(byte[] b, int off, int len) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+    while (buffer.hasRemaining()) {
+      spillChannel.write(buffer, size + buffer.position() - off);
+    }
+    size += len;
+  }
+
+  private void readSpillFile(long from, byte[] dst) {
+    try {
+      if (spillChannel != null) {
+        readFully(spillChannel, from, dst);
+        return;
+      }
+      try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+        readFully(channel, from, dst);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  // A file shorter than the buffer thinks would otherwise be read forever.
+  private static void readFully(FileChannel channel, long from, byte[] dst) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(dst);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, from + buffer.position()) < 0) {
+        throw new EOFException("Spill file ends before byte " + (from + dst.length));
+      }
+    }
+  }
+
+  @AllArgsConstructor
+  @Getter
+  public static class Slice {
+    private final long position;
+    private final byte[] bytes;
+    private final long end;
+  }
+}
@@ -0,0 +1,36 @@
+package impl.service.output;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class OutputBufferFactory {
+  private final OutputPolicy policy;
+  private final long maxBytes;
+  private final long memoryThreshold;
+  private final Path spillDir;
+  private final double writesPerSecond;
+  private final OutputArena arena;
+
+  public OutputBufferFactory(@Value("${executor.output.policy:TRUNCATE_HEAD}") OutputPolicy policy,
+                             @Value("${executor.output.max-bytes:10485760}") Long maxBytes,
+                             @Value("${executor.output.memory-threshold:1048576}") Long memoryThreshold,
+                             @Value("${executor.output.spill-dir:${java.io.tmpdir}}") String spillDir,
+                             @Value("${executor.output.writes-per-second:0}") Double writesPerSecond,
+                             OutputArena arena) {
+    this.policy = policy;
+    this.maxBytes = maxBytes;
+    this.memoryThreshold = memoryThreshold;
+    this.spillDir = Paths.get(spillDir);
+    this.writesPerSecond = writesPerSecond;
+    this.arena = arena;
+  }
+
+  public OutputBuffer create() {
+    return new OutputBuffer(policy, maxBytes, memoryThreshold, spillDir,
+          writesPerSecond > 0 ? RateLimiter.create(writesPerSecond) : null, arena);
+  }
+}
@@ -0,0 +1,7 @@
+package impl.service.output;
+
+public enum OutputPolicy {
+  TRUNCATE_HEAD,   // keeps the last max-bytes of output
+  TRUNCATE_TAIL,   // keeps the first max-bytes of output
+  SPILL            // moves output to a temp file after memory-threshold, up to max-bytes
+}
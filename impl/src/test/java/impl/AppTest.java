@@ -1,12 +1,31 @@
 package impl;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 class AppTest {
+    @Autowired
+    private MockMvc mvc;
+
     @Test
     void shouldPassOnRisingOfAppContext() { }
+
+    @Test
+    void shouldPassOnExportingMetricsInPrometheusFormat() throws Exception {
+        mvc.perform(get("/actuator/prometheus"))
+              .andExpect(status().isOk())
+              .andExpect(content().string(Matchers.containsString("executor_queue_depth")))
+              .andExpect(content().string(Matchers.containsString("executor_pool_saturation")))
+              .andExpect(content().string(Matchers.containsString("executor_eval_seconds_bucket")));
+    }
 }
@@ -1,23 +1,47 @@
 package impl.controllers;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import impl.service.ExecEventLog;
+import impl.service.ExecEventStreamer;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
 import impl.service.ExecStatus;
+import impl.service.OutputStreamer;
 import impl.service.ScriptExecService;
 import impl.service.dto.ExecInfo;
+import impl.service.dto.ExecSubmission;
+import impl.service.dto.IdPage;
+import impl.service.dto.OutputChunk;
+import impl.service.exceptions.BatchTooLargeException;
 import impl.service.exceptions.DeletionException;
 import impl.service.exceptions.ExecTimeOutException;
+import impl.service.exceptions.InvalidCursorException;
+import impl.service.exceptions.InvalidTimeoutException;
+import impl.service.exceptions.InvalidWaitException;
+import impl.service.exceptions.QueueFullException;
 import impl.service.exceptions.UnknownIdException;
+import impl.service.exceptions.UnknownPriorityException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
@@ -25,19 +49,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import rest.api.dto.ExecReq;
+import rest.api.dto.LimitsReq;
+import rest.api.dto.StatusBatchReq;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(controllers = ExecutorController.class)
 @AutoConfigureMockMvc
+@Import({OutputStreamer.class, ExecEventStreamer.class, ExecEventLog.class, SimpleMeterRegistry.class})
 public class ExecutorControllerTest {
   private final String EXEC_ID = "id";
   private final String SCRIPT = "console.log('hello')";
   private final ExecInfo RESULT =
-        new ExecInfo(ExecStatus.DONE.name(), "hello");
+        new ExecInfo(ExecStatus.DONE.name(), "hello", false, false, 5);
 
   @Autowired
   private MockMvc mvc;
@@ -48,11 +79,14 @@ public class ExecutorControllerTest {
   @Autowired
   private ObjectMapper mapper;
 
+  @Autowired
+  private ExecEventLog events;
+
 
   @Test
   public void shouldPassOnPerformingScriptAsync() throws Exception {
-    String json = mapper.writeValueAsString(new ExecReq(SCRIPT));
-    Mockito.when(service.executeScriptAsync(SCRIPT)).thenReturn(EXEC_ID);
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, null));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0)).thenReturn(EXEC_ID);
     mvc.perform(
           post("/executor/js/script")
                 .content(json)
@@ -65,18 +99,24 @@ public class ExecutorControllerTest {
 
   @Test
   public void shouldPassOnPerformingScriptWithBlocking() throws Exception {
-    String json = mapper.writeValueAsString(new ExecReq(SCRIPT));
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, null));
     Mockito.when(
           service.executeScript(
                 Mockito.eq(SCRIPT),
+                Mockito.eq(ExecPriority.NORMAL),
+                Mockito.isNull(),
+                Mockito.eq(ExecLimits.NONE),
                 Mockito.anyLong(),
                 Mockito.any()))
-          .thenReturn(RESULT);
-    mvc.perform(
+          .thenReturn(CompletableFuture.completedFuture(RESULT));
+    MvcResult result = mvc.perform(
           post("/executor/js/script")
                 .content(json)
                 .queryParam("blocking", "true")
                 .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    mvc.perform(asyncDispatch(result))
           .andExpect(status().is(200))
           .andExpect(content().contentType(MediaType.APPLICATION_JSON))
           .andExpect(jsonPath("$.resultStatus", Matchers.is(RESULT.getStatus())))
@@ -85,20 +125,26 @@ public class ExecutorControllerTest {
 
   @Test
   public void shouldFailOnPerformingScriptWithBlockingWhenTimeout() throws Exception {
-    String json = mapper.writeValueAsString(new ExecReq(SCRIPT));
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, null));
     long timeout = 5;
     TimeUnit timeUnit = TimeUnit.MINUTES;
     Mockito.when(
           service.executeScript(
                 Mockito.eq(SCRIPT),
+                Mockito.eq(ExecPriority.NORMAL),
+                Mockito.isNull(),
+                Mockito.eq(ExecLimits.NONE),
                 Mockito.anyLong(),
                 Mockito.any()))
-          .thenThrow(new ExecTimeOutException(timeout, timeUnit));
-    mvc.perform(
+          .thenReturn(CompletableFuture.failedFuture(new ExecTimeOutException(timeout, timeUnit)));
+    MvcResult result = mvc.perform(
           post("/executor/js/script")
                 .content(json)
                 .queryParam("blocking", "true")
                 .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    mvc.perform(asyncDispatch(result))
           .andExpect(status().is(403))
           .andExpect(content().contentType(MediaType.APPLICATION_JSON))
           .andExpect(jsonPath("$.error",
@@ -107,19 +153,173 @@ public class ExecutorControllerTest {
 
   @Test
   public void shouldPassOnGettingStatus() throws Exception {
-    ExecInfo status = new ExecInfo(ExecStatus.QUEUE.name(), "");
-    Mockito.when(service.getExecutionStatus(EXEC_ID)).thenReturn(status);
+    ExecInfo status = new ExecInfo(ExecStatus.QUEUE.name(), "", false, false, 0);
+    Mockito.when(service.getExecutionStatus(EXEC_ID, 0)).thenReturn(status);
     mvc.perform(
           get("/executor/js/script/" + EXEC_ID))
           .andExpect(status().isOk())
           .andExpect(content().contentType(MediaType.APPLICATION_JSON))
           .andExpect(jsonPath("$.status", Matchers.is(status.getStatus())))
-          .andExpect(jsonPath("$.output", Matchers.is(status.getOutput())));
+          .andExpect(jsonPath("$.output", Matchers.is(status.getOutput())))
+          .andExpect(jsonPath("$.outputTruncated", Matchers.is(false)))
+          .andExpect(jsonPath("$.outputSpilled", Matchers.is(false)))
+          .andExpect(jsonPath("$.offset", Matchers.is(0)));
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusFromOffset() throws Exception {
+    ExecInfo status = new ExecInfo(ExecStatus.RUNNING.name(), "llo", false, false, 5);
+    Mockito.when(service.getExecutionStatus(EXEC_ID, 2)).thenReturn(status);
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("offset", "2"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.output", Matchers.is("llo")))
+          .andExpect(jsonPath("$.offset", Matchers.is(5)));
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusWithTruncatedOutput() throws Exception {
+    ExecInfo status = new ExecInfo(ExecStatus.RUNNING.name(), "tail", true, true, 4);
+    Mockito.when(service.getExecutionStatus(EXEC_ID, 0)).thenReturn(status);
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.outputTruncated", Matchers.is(true)))
+          .andExpect(jsonPath("$.outputSpilled", Matchers.is(true)));
+  }
+
+  @Test
+  public void shouldPassOnWaitingForStatus() throws Exception {
+    Mockito.when(service.waitForExecutionStatus(EXEC_ID, 0, 30_000, TimeUnit.MILLISECONDS))
+          .thenReturn(CompletableFuture.completedFuture(RESULT));
+    MvcResult result = mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("waitFor", "finished")
+                .queryParam("timeout", "30s"))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    mvc.perform(asyncDispatch(result))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.status", Matchers.is(RESULT.getStatus())))
+          .andExpect(jsonPath("$.output", Matchers.is(RESULT.getOutput())));
+  }
+
+  @Test
+  public void shouldPassOnWaitingForStatusWithCappedTimeout() throws Exception {
+    Mockito.when(service.waitForExecutionStatus(EXEC_ID, 3, 60_000, TimeUnit.MILLISECONDS))
+          .thenReturn(CompletableFuture.completedFuture(RESULT));
+    MvcResult result = mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("waitFor", "finished")
+                .queryParam("timeout", "600")
+                .queryParam("offset", "3"))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    mvc.perform(asyncDispatch(result))
+          .andExpect(status().isOk());
+  }
+
+  @Test
+  public void shouldFailOnWaitingForUnknownCondition() throws Exception {
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("waitFor", "running"))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error", Matchers.is(InvalidWaitException.generateMessage("waitFor", "running"))));
+  }
+
+  @Test
+  public void shouldFailOnWaitingWithInvalidTimeout() throws Exception {
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("waitFor", "finished")
+                .queryParam("timeout", "soon"))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error", Matchers.is(InvalidWaitException.generateMessage("timeout", "soon"))));
+  }
+
+  @Test
+  public void shouldFailOnWaitingForUnknownId() throws Exception {
+    Mockito.when(service.waitForExecutionStatus(EXEC_ID, 0, 30_000, TimeUnit.MILLISECONDS))
+          .thenThrow(new UnknownIdException(EXEC_ID));
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID)
+                .queryParam("waitFor", "finished"))
+          .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void shouldPassOnGettingStatuses() throws Exception {
+    Mockito.when(service.getExecutionStatuses(List.of(EXEC_ID, "unknown"), false))
+          .thenReturn(List.of(Optional.of(new ExecInfo(ExecStatus.DONE.name(), null, false, false, 0)),
+                Optional.empty()));
+    mvc.perform(
+          post("/executor/js/scripts:status")
+                .content(mapper.writeValueAsString(new StatusBatchReq(List.of(EXEC_ID, "unknown"))))
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(200))
+          .andExpect(jsonPath("$.scripts[0].id", Matchers.is(EXEC_ID)))
+          .andExpect(jsonPath("$.scripts[0].status", Matchers.is(ExecStatus.DONE.name())))
+          .andExpect(jsonPath("$.scripts[0].output").doesNotExist())
+          .andExpect(jsonPath("$.scripts[1].id", Matchers.is("unknown")))
+          .andExpect(jsonPath("$.scripts[1].error", Matchers.is(UnknownIdException.generateMessage("unknown"))));
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusesWithOutput() throws Exception {
+    Mockito.when(service.getExecutionStatuses(List.of(EXEC_ID), true))
+          .thenReturn(List.of(Optional.of(RESULT)));
+    mvc.perform(
+          post("/executor/js/scripts:status")
+                .content(mapper.writeValueAsString(new StatusBatchReq(List.of(EXEC_ID))))
+                .queryParam("output", "true")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(200))
+          .andExpect(jsonPath("$.scripts[0].status", Matchers.is(RESULT.getStatus())))
+          .andExpect(jsonPath("$.scripts[0].output", Matchers.is(RESULT.getOutput())))
+          .andExpect(jsonPath("$.scripts[0].offset", Matchers.is(5)));
+  }
+
+  @Test
+  public void shouldPassOnGettingOutput() throws Exception {
+    Mockito.when(service.getExecutionOutput(EXEC_ID))
+          .thenReturn(new ByteArrayResource("hello".getBytes()));
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output"))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.TEXT_PLAIN))
+          .andExpect(content().string("hello"));
+  }
+
+  @Test
+  public void shouldPassOnGettingOutputRange() throws Exception {
+    Mockito.when(service.getExecutionOutput(EXEC_ID))
+          .thenReturn(new ByteArrayResource("hello world".getBytes()));
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output")
+                .header("Range", "bytes=-5"))
+          .andExpect(status().isPartialContent())
+          .andExpect(header().string("Content-Range", "bytes 6-10/11"))
+          .andExpect(content().string("world"));
+  }
+
+  @Test
+  public void shouldFailOnGettingOutputWithUnknownId() throws Exception {
+    Mockito.when(service.getExecutionOutput(EXEC_ID))
+          .thenThrow(new UnknownIdException(EXEC_ID));
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output"))
+          .andExpect(status().isNotFound())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.error",
+                Matchers.is(UnknownIdException.generateMessage(EXEC_ID))));
   }
 
   @Test
   public void shouldFailOnGettingStatusWithUnknownId() throws Exception {
-    Mockito.when(service.getExecutionStatus(EXEC_ID))
+    Mockito.when(service.getExecutionStatus(EXEC_ID, 0))
           .thenThrow(new UnknownIdException(EXEC_ID));
     mvc.perform(
           get("/executor/js/script/" + EXEC_ID))
@@ -129,6 +329,93 @@ public class ExecutorControllerTest {
                 Matchers.is(UnknownIdException.generateMessage(EXEC_ID))));
   }
 
+  @Test
+  public void shouldPassOnStreamingOutput() throws Exception {
+    Mockito.when(service.readExecutionOutput(Mockito.eq(EXEC_ID), Mockito.eq(0L), Mockito.anyInt()))
+          .thenReturn(new OutputChunk(ExecStatus.RUNNING.name(), "hello\n", 6, false));
+    Mockito.when(service.readExecutionOutput(Mockito.eq(EXEC_ID), Mockito.eq(6L), Mockito.anyInt()))
+          .thenReturn(new OutputChunk(ExecStatus.DONE.name(), "", 6, true));
+    MvcResult result = mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    result.getAsyncResult(10_000);
+    String events = result.getResponse().getContentAsString();
+    Assertions.assertTrue(events.contains(
+          "event:output\nid:6\ndata:{\"output\":\"hello\\n\",\"offset\":6}\n\n"), events);
+    Assertions.assertTrue(events.contains("event:status\ndata:DONE\n"), events);
+  }
+
+  @Test
+  public void shouldPassOnResumingOutputStream() throws Exception {
+    Mockito.when(service.readExecutionOutput(Mockito.eq(EXEC_ID), Mockito.eq(6L), Mockito.anyInt()))
+          .thenReturn(new OutputChunk(ExecStatus.DONE.name(), "bye", 9, true));
+    MvcResult result = mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output/stream")
+                .header("Last-Event-ID", "6")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    result.getAsyncResult(10_000);
+    String events = result.getResponse().getContentAsString();
+    Assertions.assertTrue(events.contains(
+          "event:output\nid:9\ndata:{\"output\":\"bye\",\"offset\":9}\n\n"), events);
+  }
+
+  @Test
+  public void shouldFailOnStreamingOutputWithUnknownId() throws Exception {
+    Mockito.when(service.readExecutionOutput(Mockito.eq(EXEC_ID), Mockito.anyLong(), Mockito.anyInt()))
+          .thenThrow(new UnknownIdException(EXEC_ID));
+    mvc.perform(
+          get("/executor/js/script/" + EXEC_ID + "/output/stream"))
+          .andExpect(status().isNotFound())
+          .andExpect(jsonPath("$.error",
+                Matchers.is(UnknownIdException.generateMessage(EXEC_ID))));
+  }
+
+  @Test
+  public void shouldPassOnResumingEventStream() throws Exception {
+    long base = events.getLastSeq();
+    events.publish(EXEC_ID, ExecStatus.QUEUE);
+    events.publish(EXEC_ID, ExecStatus.RUNNING);
+    MvcResult result = mvc.perform(
+          get("/executor/js/script-events")
+                .header("Last-Event-ID", String.valueOf(base + 1))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    events.publish(EXEC_ID, ExecEventLog.DELETED);
+    String stream = awaitContent(result, "\"event\":\"DELETED\"");
+    Assertions.assertFalse(stream.contains("\"event\":\"QUEUE\""), stream);
+    Assertions.assertTrue(stream.contains("event:exec\nid:" + (base + 2) + "\ndata:{\"seq\":" + (base + 2)
+          + ",\"id\":\"" + EXEC_ID + "\",\"event\":\"RUNNING\""), stream);
+    Assertions.assertTrue(stream.indexOf("RUNNING") < stream.indexOf("DELETED"), stream);
+  }
+
+  @Test
+  public void shouldPassOnResettingEventStreamAfterUnknownId() throws Exception {
+    MvcResult result = mvc.perform(
+          get("/executor/js/script-events")
+                .header("Last-Event-ID", String.valueOf(Long.MAX_VALUE))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+    events.publish(EXEC_ID, ExecStatus.QUEUE);
+    String stream = awaitContent(result, "\"event\":\"QUEUE\"");
+    Assertions.assertTrue(stream.startsWith("event:reset\n"), stream);
+  }
+
+  private String awaitContent(MvcResult result, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 10_000;
+    String content = result.getResponse().getContentAsString();
+    while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      content = result.getResponse().getContentAsString();
+    }
+    return content;
+  }
+
   @Test
   public void shouldPassOnCancellation() throws Exception {
     mvc.perform(
@@ -179,24 +466,218 @@ public class ExecutorControllerTest {
                 Matchers.is(UnknownIdException.generateMessage(EXEC_ID))));
   }
 
+  @Test
+  public void shouldPassOnPerformingScriptAsyncWithPriority() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, "interactive", null, null, null));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.INTERACTIVE, null, ExecLimits.NONE, 0)).thenReturn(EXEC_ID);
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(201))
+          .andExpect(jsonPath("$.id", Matchers.is(EXEC_ID)));
+  }
+
+  @Test
+  public void shouldPassOnPerformingScriptAsyncWithTenantHeader() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, "team-b", null, null));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, "team-a", ExecLimits.NONE, 0)).thenReturn(EXEC_ID);
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .header("X-Tenant-Id", "team-a")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(201))
+          .andExpect(jsonPath("$.id", Matchers.is(EXEC_ID)));
+  }
+
+  @Test
+  public void shouldPassOnPerformingScriptAsyncWithLimits() throws Exception {
+    String json = mapper.writeValueAsString(
+          new ExecReq(SCRIPT, null, null, new LimitsReq(1000L, null, 1024L), null));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, null, new ExecLimits(1000, 0, 1024), 0))
+          .thenReturn(EXEC_ID);
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(201))
+          .andExpect(jsonPath("$.id", Matchers.is(EXEC_ID)));
+  }
+
+  @Test
+  public void shouldPassOnPerformingScriptAsyncWithTimeout() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, 500L));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 500))
+          .thenReturn(EXEC_ID);
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(201))
+          .andExpect(jsonPath("$.id", Matchers.is(EXEC_ID)));
+  }
+
+  @Test
+  public void shouldPassOnPerformingScriptBatch() throws Exception {
+    String json = mapper.writeValueAsString(List.of(
+          new ExecReq(SCRIPT, null, null, null, null),
+          new ExecReq(SCRIPT, "batch", null, null, 500L)));
+    Mockito.when(service.executeScriptsAsync(List.of(
+          new ExecSubmission(SCRIPT, ExecPriority.NORMAL, "team-a", ExecLimits.NONE, 0),
+          new ExecSubmission(SCRIPT, ExecPriority.BATCH, "team-a", ExecLimits.NONE, 500)), false))
+          .thenReturn(Arrays.asList(EXEC_ID, null));
+    mvc.perform(
+          post("/executor/js/scripts:batch")
+                .content(json)
+                .header("X-Tenant-Id", "team-a")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(201))
+          .andExpect(jsonPath("$.scripts[0].id", Matchers.is(EXEC_ID)))
+          .andExpect(jsonPath("$.scripts[1]", Matchers.nullValue()))
+          .andExpect(jsonPath("$.rejected", Matchers.is(1)));
+  }
+
+  @Test
+  public void shouldFailOnPerformingAtomicScriptBatchWhenQueueIsFull() throws Exception {
+    String json = mapper.writeValueAsString(List.of(new ExecReq(SCRIPT, null, null, null, null)));
+    Mockito.when(service.executeScriptsAsync(List.of(
+          new ExecSubmission(SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0)), true))
+          .thenThrow(new QueueFullException(7));
+    mvc.perform(
+          post("/executor/js/scripts:batch")
+                .content(json)
+                .queryParam("atomic", "true")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(429))
+          .andExpect(header().string("Retry-After", "7"));
+  }
+
+  @Test
+  public void shouldFailOnPerformingTooLargeScriptBatch() throws Exception {
+    List<ExecReq> batch = new ArrayList<>();
+    for (int i = 0; i < 10_001; i++) {
+      batch.add(new ExecReq(SCRIPT, null, null, null, null));
+    }
+    mvc.perform(
+          post("/executor/js/scripts:batch")
+                .content(mapper.writeValueAsString(batch))
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().is(413))
+          .andExpect(jsonPath("$.error", Matchers.is(BatchTooLargeException.generateMessage(10_001, 10_000))));
+  }
+
+  @Test
+  public void shouldFailOnPerformingScriptAsyncWithUnknownPriority() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, "urgent", null, null, null));
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isBadRequest())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.error",
+                Matchers.is(UnknownPriorityException.generateMessage("urgent"))));
+  }
+
+  @Test
+  public void shouldFailOnAsyncExecWithTimeoutOutOfRange() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, Long.MAX_VALUE));
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error",
+                Matchers.is(InvalidTimeoutException.generateMessage(Long.MAX_VALUE, 86_400_000))));
+    Mockito.verifyNoInteractions(service);
+  }
+
+  @Test
+  public void shouldFailOnPerformingScriptBatchWithNegativeTimeout() throws Exception {
+    String json = mapper.writeValueAsString(List.of(new ExecReq(SCRIPT, null, null, null, -1L)));
+    mvc.perform(
+          post("/executor/js/scripts:batch")
+                .content(json)
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.error",
+                Matchers.is(InvalidTimeoutException.generateMessage(-1, 86_400_000))));
+    Mockito.verifyNoInteractions(service);
+  }
+
+  @Test
+  public void shouldFailOnAsyncExecWhenQueueIsFull() throws Exception {
+    String json = mapper.writeValueAsString(new ExecReq(SCRIPT, null, null, null, null));
+    Mockito.when(service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0))
+          .thenThrow(new QueueFullException(3));
+    mvc.perform(
+          post("/executor/js/script")
+                .content(json)
+                .queryParam("blocking", "false")
+                .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(status().isTooManyRequests())
+          .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.error",
+                Matchers.is(QueueFullException.generateMessage(3))));
+  }
+
   @Test
   public void shouldPassOnGettingExecList() throws Exception {
-    Mockito.when(service.getAllExecutionIds())
-          .thenReturn(Collections.singletonList(EXEC_ID));
+    Mockito.when(service.getAllExecutionIds(null, 1000))
+          .thenReturn(new IdPage(Collections.singletonList(EXEC_ID), null));
     mvc.perform(
           get("/executor/js/script-list"))
           .andExpect(status().isOk())
           .andExpect(content().contentType(MediaType.APPLICATION_JSON))
           .andExpect(jsonPath("$.scripts.[0].id",
-                Matchers.is(EXEC_ID)));
+                Matchers.is(EXEC_ID)))
+          .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  public void shouldPassOnGettingExecListPage() throws Exception {
+    Mockito.when(service.getAllExecutionIds("cursor", 10000))
+          .thenReturn(new IdPage(Collections.singletonList(EXEC_ID), "next"));
+    mvc.perform(
+          get("/executor/js/script-list")
+                .param("limit", "20000")
+                .param("cursor", "cursor"))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.scripts.[0].id",
+                Matchers.is(EXEC_ID)))
+          .andExpect(jsonPath("$.nextCursor",
+                Matchers.is("next")));
+  }
+
+  @Test
+  public void shouldFailOnGettingExecListWithInvalidCursor() throws Exception {
+    Mockito.when(service.getAllExecutionIds("cursor", 1000))
+          .thenThrow(new InvalidCursorException("cursor"));
+    mvc.perform(
+          get("/executor/js/script-list")
+                .param("cursor", "cursor"))
+          .andExpect(status().isBadRequest())
+          .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+          .andExpect(jsonPath("$.error",
+                Matchers.is(InvalidCursorException.generateMessage("cursor"))));
   }
 
   @Test
   public void shouldPassOnGettingFinishedExecList() throws Exception {
-    Mockito.when(service.getFinishedExecutionIds())
-          .thenReturn(Collections.singletonList(EXEC_ID));
+    Mockito.when(service.getFinishedExecutionIds(null, 5))
+          .thenReturn(new IdPage(Collections.singletonList(EXEC_ID), null));
     mvc.perform(
-          get("/executor/js/script-list/finished"))
+          get("/executor/js/script-list/finished")
+                .param("limit", "5"))
           .andExpect(status().isOk())
           .andExpect(content().contentType(MediaType.APPLICATION_JSON))
           .andExpect(jsonPath("$.scripts.[0].id",
@@ -1,33 +1,64 @@
 package impl.repositories;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import impl.repositories.entities.ExecState;
 import impl.repositories.entities.Execution;
+import impl.service.ExecEventLog;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
 import impl.service.ExecStatus;
+import impl.service.dto.ExecEvent;
+import impl.service.dto.ExecSubmission;
 import impl.service.exceptions.UnknownIdException;
-import java.io.ByteArrayOutputStream;
+import impl.service.output.OutputArena;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 public class ExecRepositoryImpTest {
   private ExecRepositoryImpl repo;
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ExecEventLog events = new ExecEventLog(100, 100, registry);
   private final Execution EXECUTION = new Execution(
-        new AtomicReference<>(ExecStatus.QUEUE),
-        new ByteArrayOutputStream(),
-        new CompletableFuture<>(),
+        new ExecState(ExecStatus.QUEUE),
+        new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
         new CompletableFuture<>()
   );
 
   @BeforeEach
   public void setup() {
-    repo = new ExecRepositoryImpl();
+    repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L, events, ExecJournal.NONE, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  public void close() {
+    repo.close();
+  }
+
+  private Execution finishedExecution(int outputBytes) throws IOException {
+    Execution exec = new Execution(
+          new ExecState(ExecStatus.DONE),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          CompletableFuture.completedFuture(null));
+    exec.getOutputStream().write(new byte[outputBytes]);
+    return exec;
   }
 
   @Test
@@ -77,4 +108,242 @@ public class ExecRepositoryImpTest {
     assertEquals(2, ids.size());
     assertTrue(ids.containsAll(Arrays.asList(id, id1)));
   }
+
+  @Test
+  public void shouldPassOnHandingOutIdsInSubmissionOrder() {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ids.add(repo.addExecution(EXECUTION));
+    }
+    assertEquals(ids, new ArrayList<>(repo.getAllIds()));
+  }
+
+  @Test
+  public void shouldPassOnAddingExecsInOneCall() {
+    String first = repo.addExecution(EXECUTION);
+    List<String> ids = repo.addExecutions(List.of(EXECUTION, EXECUTION, EXECUTION));
+    assertEquals(3, ids.size());
+    List<String> all = new ArrayList<>(repo.getAllIds());
+    assertEquals(first, all.get(0));
+    assertEquals(ids, all.subList(1, 4));
+  }
+
+  @Test
+  public void shouldPassOnCountingOutputOfRunningAndFinishedExecs() throws IOException {
+    Execution running = new Execution(
+          new ExecState(ExecStatus.RUNNING),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          new CompletableFuture<>());
+    running.getOutputStream().write(new byte[10]);
+    repo.addExecution(running);
+    repo.addExecution(finishedExecution(5));
+    assertEquals(5, repo.getRetainedBytes());
+    assertEquals(15, repo.getTotalOutputBytes());
+  }
+
+  //    retention
+
+  @Test
+  public void shouldPassOnEvictingOldestFinishedExecsByCount() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 2L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    String running = repo.addExecution(EXECUTION);
+    String id = repo.addExecution(finishedExecution(10));
+    String id1 = repo.addExecution(finishedExecution(10));
+    String id2 = repo.addExecution(finishedExecution(10));
+    repo.sweep();
+    assertEquals(Set.of(running, id1, id2), repo.getAllIds());
+    assertEquals(2, repo.getFinishedCount());
+    assertEquals(1, registry.counter("executor.executions.evicted", "reason", "count").count());
+    assertTrue(repo.getExecution(id).isEmpty());
+  }
+
+  @Test
+  public void shouldPassOnEvictingFinishedExecsByOutputBytes() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 0L, 25L, 60_000L, events, ExecJournal.NONE, registry);
+    repo.addExecution(finishedExecution(10));
+    String id1 = repo.addExecution(finishedExecution(10));
+    String id2 = repo.addExecution(finishedExecution(10));
+    assertEquals(30, repo.getRetainedBytes());
+    repo.sweep();
+    assertEquals(Set.of(id1, id2), repo.getAllIds());
+    assertEquals(20, repo.getRetainedBytes());
+    assertEquals(1, registry.counter("executor.executions.evicted", "reason", "bytes").count());
+  }
+
+  @Test
+  public void shouldPassOnEvictingFinishedExecsByAge() throws IOException, InterruptedException {
+    repo = new ExecRepositoryImpl(1L, 0L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    String running = repo.addExecution(EXECUTION);
+    repo.addExecution(finishedExecution(10));
+    Thread.sleep(10);
+    repo.sweep();
+    assertEquals(Set.of(running), repo.getAllIds());
+    assertEquals(0, repo.getRetainedBytes());
+    assertEquals(1, registry.counter("executor.executions.evicted", "reason", "age").count());
+  }
+
+  @Test
+  public void shouldPassOnForgettingRemovedFinishedExec() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 1L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    String id = repo.addExecution(finishedExecution(10));
+    repo.removeExecution(id);
+    String id1 = repo.addExecution(finishedExecution(10));
+    repo.sweep();
+    assertEquals(Set.of(id1), repo.getAllIds());
+    assertEquals(0, registry.counter("executor.executions.evicted", "reason", "count").count());
+  }
+
+  @Test
+  public void shouldPassOnTrackingExecWhenItFinishes() {
+    CompletableFuture<Void> computation = new CompletableFuture<>();
+    Execution exec = new Execution(
+          new ExecState(ExecStatus.RUNNING),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          computation);
+    repo.addExecution(exec);
+    assertEquals(0, repo.getFinishedCount());
+    exec.getStatus().finish(ExecStatus.DONE);
+    computation.complete(null);
+    assertEquals(1, repo.getFinishedCount());
+  }
+
+  @Test
+  public void shouldPassOnDroppingSubmissionOnceFinishIsJournaled() {
+    AtomicReference<ExecSubmission> journaled = new AtomicReference<>();
+    repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L, events, new ExecJournal() {
+      @Override
+      public void finished(String id, Execution execution) {
+        journaled.set(execution.getSubmission());
+      }
+    }, registry);
+    ExecSubmission submission = new ExecSubmission("1", ExecPriority.NORMAL, null, ExecLimits.NONE, 0);
+    CompletableFuture<Void> computation = new CompletableFuture<>();
+    Execution exec = new Execution(
+          new ExecState(ExecStatus.RUNNING),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          computation, submission);
+    repo.addExecution(exec);
+    assertEquals(submission, exec.getSubmission());
+    exec.getStatus().finish(ExecStatus.DONE);
+    computation.complete(null);
+    assertEquals(submission, journaled.get());
+    assertNull(exec.getSubmission());
+  }
+
+  @Test
+  public void shouldPassOnArchivingOutputOfFinishedExec() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 1L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    OutputArena arena = new OutputArena(true, false, 1024, registry);
+    CompletableFuture<Void> computation = new CompletableFuture<>();
+    Execution exec = new Execution(
+          new ExecState(ExecStatus.RUNNING),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 100_000, 100_000, null, null, arena),
+          computation);
+    String id = repo.addExecution(exec);
+    byte[] output = new byte[10_000];
+    Arrays.fill(output, (byte) 'a');
+    exec.getOutputStream().write(output);
+    assertEquals(16_384, arena.getHeapBytes());
+
+    exec.getStatus().finish(ExecStatus.DONE);
+    computation.complete(null);
+    assertTrue(exec.getOutputStream().isArchived());
+    assertEquals(0, arena.getHeapBytes());
+    assertEquals(10_000, arena.getOffHeapBytes());
+    assertEquals(10_000, repo.getRetainedBytes());
+    assertEquals(new String(output), repo.getExecution(id).get().getOutputStream().toString());
+
+    repo.addExecution(finishedExecution(10));
+    repo.sweep();
+    assertTrue(repo.getExecution(id).isEmpty());
+    assertEquals(0, arena.getOffHeapBytes());
+  }
+
+  //    status index
+
+  @Test
+  public void shouldPassOnMovingIdBetweenStatusSets() {
+    ExecState state = new ExecState(ExecStatus.QUEUE);
+    Execution exec = new Execution(state,
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          new CompletableFuture<>());
+    String id = repo.addExecution(exec);
+    assertEquals(Set.of(id), repo.getIdsByStatus(ExecStatus.QUEUE));
+    state.start();
+    assertTrue(repo.getIdsByStatus(ExecStatus.QUEUE).isEmpty());
+    assertEquals(Set.of(id), repo.getIdsByStatus(ExecStatus.RUNNING));
+    state.finish(ExecStatus.DONE);
+    assertTrue(repo.getIdsByStatus(ExecStatus.RUNNING).isEmpty());
+    assertEquals(Set.of(id), repo.getIdsByStatus(ExecStatus.DONE));
+  }
+
+  @Test
+  public void shouldPassOnOrderingFinishedIdsByFinishTime() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 2L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    CompletableFuture<Void> computation = new CompletableFuture<>();
+    ExecState state = new ExecState(ExecStatus.QUEUE);
+    state.start();
+    String first = repo.addExecution(new Execution(state,
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null), computation));
+    String second = repo.addExecution(finishedExecution(10));
+    state.finish(ExecStatus.DONE);
+    computation.complete(null);
+    assertEquals(List.of(second, first), new ArrayList<>(repo.getFinishedIds().values()));
+    String third = repo.addExecution(finishedExecution(10));
+    repo.removeExecution(first);
+    repo.sweep();
+    assertEquals(List.of(second, third), new ArrayList<>(repo.getFinishedIds().values()));
+    repo.addExecution(finishedExecution(10));
+    repo.sweep();
+    assertFalse(repo.getFinishedIds().containsValue(second));
+  }
+
+  @Test
+  public void shouldPassOnDroppingRemovedAndEvictedIdsFromStatusSets() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 1L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    String id = repo.addExecution(finishedExecution(10));
+    String id1 = repo.addExecution(finishedExecution(10));
+    String id2 = repo.addExecution(finishedExecution(10));
+    repo.removeExecution(id);
+    assertEquals(Set.of(id1, id2), repo.getIdsByStatus(ExecStatus.DONE));
+    repo.sweep();
+    assertEquals(Set.of(id2), repo.getIdsByStatus(ExecStatus.DONE));
+  }
+
+  //    lifecycle events
+
+  @Test
+  public void shouldPassOnPublishingEveryTransitionOnce() {
+    ExecEventLog.Subscription sub = events.subscribe(null);
+    ExecState state = new ExecState(ExecStatus.QUEUE);
+    state.start();
+    Execution exec = new Execution(state,
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          new CompletableFuture<>());
+    String id = repo.addExecution(exec);
+    state.finish(ExecStatus.DONE);
+    assertFalse(state.finish(ExecStatus.DONE));
+    repo.removeExecution(id);
+    List<ExecEvent> seen = new ArrayList<>();
+    sub.drainTo(seen, 100);
+    assertEquals(List.of("QUEUE", "RUNNING", "DONE", ExecEventLog.DELETED),
+          seen.stream().map(ExecEvent::getType).collect(Collectors.toList()));
+    assertTrue(seen.stream().allMatch(event -> id.equals(event.getExecId())));
+    assertEquals(List.of(1L, 2L, 3L, 4L),
+          seen.stream().map(ExecEvent::getSeq).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void shouldPassOnPublishingEvictionAsDeleted() throws IOException {
+    repo = new ExecRepositoryImpl(0L, 1L, 0L, 60_000L, events, ExecJournal.NONE, registry);
+    String id = repo.addExecution(finishedExecution(10));
+    repo.addExecution(finishedExecution(10));
+    ExecEventLog.Subscription sub = events.subscribe(null);
+    repo.sweep();
+    List<ExecEvent> seen = new ArrayList<>();
+    sub.drainTo(seen, 100);
+    assertEquals(1, seen.size());
+    assertEquals(id, seen.get(0).getExecId());
+    assertEquals(ExecEventLog.DELETED, seen.get(0).getType());
+  }
 }
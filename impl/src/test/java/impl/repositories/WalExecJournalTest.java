@@ -0,0 +1,179 @@
+package impl.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import impl.repositories.entities.ExecState;
+import impl.repositories.entities.Execution;
+import impl.repositories.entities.RecoveredExec;
+import impl.service.ExecEventLog;
+import impl.service.ExecLimits;
+import impl.service.ExecPriority;
+import impl.service.ExecStatus;
+import impl.service.dto.ExecSubmission;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WalExecJournalTest {
+  private static final ExecSubmission SUBMISSION =
+        new ExecSubmission("console.log('hello')", ExecPriority.BATCH, "team-a", new ExecLimits(10, 20, 30), 500);
+
+  @TempDir
+  public Path dir;
+  private WalExecJournal journal;
+
+  @AfterEach
+  public void close() throws Exception {
+    journal.close();
+  }
+
+  private WalExecJournal open(long compactBytes) throws IOException {
+    journal = new WalExecJournal(dir.toString(), true, compactBytes);
+    return journal;
+  }
+
+  private WalExecJournal reopen() throws Exception {
+    journal.close();
+    return open(1L << 30);
+  }
+
+  private static Execution execution(ExecStatus status, String output) throws IOException {
+    OutputBuffer buffer = new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null);
+    buffer.write(output.getBytes(StandardCharsets.UTF_8));
+    return new Execution(new ExecState(status), buffer, new CompletableFuture<>(), SUBMISSION);
+  }
+
+  private static String newId() {
+    return UUID.randomUUID().toString();
+  }
+
+  private static List<String> ids(List<RecoveredExec> recovered) {
+    return recovered.stream().map(RecoveredExec::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void shouldPassOnRecoveringExecsByLastRecordedState() throws Exception {
+    open(1L << 30);
+    List<String> ids = List.of(newId(), newId(), newId(), newId());
+    Execution done = execution(ExecStatus.DONE, "hello\n");
+    journal.submitted(ids, List.of(done, execution(ExecStatus.QUEUE, ""),
+          execution(ExecStatus.QUEUE, ""), execution(ExecStatus.QUEUE, "")));
+    journal.started(ids.get(0));
+    journal.finished(ids.get(0), done);
+    journal.started(ids.get(1));
+    journal.removed(ids.get(3));
+
+    List<RecoveredExec> recovered = reopen().recover();
+    assertEquals(ids.subList(0, 3), ids(recovered));
+    assertEquals(ExecStatus.DONE, recovered.get(0).getStatus());
+    assertArrayEquals("hello\n".getBytes(StandardCharsets.UTF_8), recovered.get(0).getOutput());
+    assertEquals(ExecStatus.INTERRUPTED, recovered.get(1).getStatus());
+    assertEquals(ExecStatus.QUEUE, recovered.get(2).getStatus());
+    assertEquals(SUBMISSION, recovered.get(2).getSubmission());
+    assertTrue(journal.recover().isEmpty());
+
+    recovered = reopen().recover();
+    assertEquals(ExecStatus.INTERRUPTED, recovered.get(1).getStatus());
+  }
+
+  @Test
+  public void shouldPassOnDiscardingTornTail() throws Exception {
+    open(1L << 30);
+    String id = newId();
+    journal.submitted(List.of(id), List.of(execution(ExecStatus.QUEUE, "")));
+    journal.close();
+    Path file = dir.resolve(WalExecJournal.FILE_NAME);
+    long size = Files.size(file);
+    Files.write(file, new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    assertEquals(List.of(id), ids(open(1L << 30).recover()));
+    assertEquals(size, Files.size(file));
+  }
+
+  @Test
+  public void shouldPassOnCompactingRemovedExecs() throws Exception {
+    open(1);
+    String kept = newId();
+    journal.submitted(List.of(kept), List.of(execution(ExecStatus.QUEUE, "")));
+    for (int i = 0; i < 20; i++) {
+      String id = newId();
+      Execution exec = execution(ExecStatus.DONE, "output of a removed execution");
+      journal.submitted(List.of(id), List.of(exec));
+      journal.finished(id, exec);
+      journal.removed(id);
+    }
+    journal.submitted(List.of(newId()), List.of(execution(ExecStatus.QUEUE, "")));
+    reopen();
+    Path file = dir.resolve(WalExecJournal.FILE_NAME);
+    assertTrue(Files.size(file) < 1024, "size " + Files.size(file));
+    List<RecoveredExec> recovered = journal.recover();
+    assertEquals(2, recovered.size());
+    assertEquals(kept, recovered.get(0).getId());
+  }
+
+  @Test
+  public void shouldPassOnGroupCommittingConcurrentSubmissions() throws Exception {
+    open(1L << 30);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<String>> submitted = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      submitted.add(pool.submit(() -> {
+        String id = newId();
+        journal.submitted(List.of(id), List.of(execution(ExecStatus.QUEUE, "")));
+        return id;
+      }));
+    }
+    List<String> ids = new ArrayList<>();
+    for (Future<String> id : submitted) {
+      ids.add(id.get());
+    }
+    pool.shutdown();
+    List<String> recovered = ids(reopen().recover());
+    assertEquals(200, recovered.size());
+    assertTrue(recovered.containsAll(ids));
+  }
+
+  @Test
+  public void shouldPassOnJournalingRepositoryChanges() throws Exception {
+    open(1L << 30);
+    ExecRepositoryImpl repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L,
+          new ExecEventLog(100, 100, new SimpleMeterRegistry()), journal, new SimpleMeterRegistry());
+    Execution finished = execution(ExecStatus.QUEUE, "");
+    Execution removed = execution(ExecStatus.QUEUE, "");
+    Execution running = execution(ExecStatus.QUEUE, "");
+    List<String> ids = repo.addExecutions(List.of(finished, removed, running));
+    finished.getStatus().start();
+    finished.getOutputStream().write("bye".getBytes(StandardCharsets.UTF_8));
+    finished.getStatus().finish(ExecStatus.DONE);
+    finished.getComputation().complete(null);
+    removed.getStatus().cancel(ExecStatus.CANCELLED);
+    removed.getComputation().complete(null);
+    repo.removeExecution(ids.get(1));
+    running.getStatus().start();
+    repo.close();
+
+    List<RecoveredExec> recovered = reopen().recover();
+    assertEquals(List.of(ids.get(0), ids.get(2)), ids(recovered));
+    assertEquals(ExecStatus.DONE, recovered.get(0).getStatus());
+    assertArrayEquals("bye".getBytes(StandardCharsets.UTF_8), recovered.get(0).getOutput());
+    assertEquals(ExecStatus.INTERRUPTED, recovered.get(1).getStatus());
+  }
+}
@@ -0,0 +1,144 @@
+package impl.repositories.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import impl.service.ExecStatus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ExecStateTest {
+  private static final int ROUNDS = 2000;
+  private static final int CANCELLERS = 3;
+  private final AtomicInteger dequeued = new AtomicInteger();
+  private final AtomicInteger interrupted = new AtomicInteger();
+  private final ExecState state = new ExecState(ExecStatus.QUEUE, dequeued::incrementAndGet);
+  private final ExecutorService pool = Executors.newFixedThreadPool(CANCELLERS + 1);
+
+  @AfterEach
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void shouldPassOnCancellingQueued() {
+    assertEquals(ExecStatus.QUEUE, state.cancel(ExecStatus.TIMED_OUT));
+    assertEquals(ExecStatus.TIMED_OUT, state.get());
+    assertEquals(1, dequeued.get());
+    assertFalse(state.start());
+  }
+
+  @Test
+  public void shouldPassOnCancellingRunning() {
+    assertTrue(state.start());
+    assertTrue(state.attach(interrupted::incrementAndGet));
+    assertEquals(ExecStatus.RUNNING, state.cancel(ExecStatus.CANCELLED));
+    assertEquals(1, interrupted.get());
+    assertEquals(ExecStatus.RUNNING, state.get());
+    assertNull(state.cancel(ExecStatus.TIMED_OUT));
+    assertTrue(state.finish(state.getCancelledAs()));
+    assertEquals(ExecStatus.CANCELLED, state.get());
+    assertEquals(0, dequeued.get());
+  }
+
+  @Test
+  public void shouldPassOnAttachingAfterCancel() {
+    assertTrue(state.start());
+    assertEquals(ExecStatus.RUNNING, state.cancel(ExecStatus.LIMIT_EXCEEDED));
+    assertFalse(state.attach(interrupted::incrementAndGet));
+    assertEquals(0, interrupted.get());
+    assertEquals(ExecStatus.LIMIT_EXCEEDED, state.getCancelledAs());
+  }
+
+  @Test
+  public void shouldPassOnCancellingFinished() {
+    assertTrue(state.start());
+    assertTrue(state.finish(ExecStatus.DONE));
+    assertNull(state.cancel(ExecStatus.CANCELLED));
+    assertFalse(state.finish(ExecStatus.DONE_WITH_EXCEPTION));
+    assertEquals(ExecStatus.DONE, state.get());
+  }
+
+  @Test
+  public void shouldPassOnNotifyingOnStatusChangesOnly() {
+    List<ExecStatus> seen = new ArrayList<>();
+    state.onChange(() -> seen.add(state.get()));
+    state.start();
+    state.attach(() -> { });
+    state.cancel(ExecStatus.CANCELLED);
+    state.finish(ExecStatus.CANCELLED);
+    assertEquals(List.of(ExecStatus.RUNNING, ExecStatus.CANCELLED), seen);
+  }
+
+  // A worker and several cancellers race on a fresh state every round.
+  @Test
+  public void shouldPassOnRacingCancelStartAndFinish() throws Exception {
+    CyclicBarrier barrier = new CyclicBarrier(CANCELLERS + 1);
+    for (int round = 0; round < ROUNDS; round++) {
+      AtomicInteger dequeues = new AtomicInteger();
+      AtomicInteger interrupts = new AtomicInteger();
+      ExecState raced = new ExecState(ExecStatus.QUEUE, dequeues::incrementAndGet);
+      Future<Boolean[]> worker = pool.submit(() -> {
+        barrier.await(10, TimeUnit.SECONDS);
+        boolean started = raced.start();
+        boolean attached = started && raced.attach(interrupts::incrementAndGet);
+        if (started) {
+          ExecStatus as = raced.getCancelledAs();
+          raced.finish(as != null ? as : ExecStatus.DONE);
+        }
+        return new Boolean[] {started, attached};
+      });
+      List<Future<ExecStatus>> cancellers = new ArrayList<>();
+      ExecStatus[] reasons = {ExecStatus.CANCELLED, ExecStatus.TIMED_OUT, ExecStatus.LIMIT_EXCEEDED};
+      for (int i = 0; i < CANCELLERS - 1; i++) {
+        ExecStatus reason = reasons[i];
+        cancellers.add(pool.submit(() -> {
+          barrier.await(10, TimeUnit.SECONDS);
+          return raced.cancel(reason);
+        }));
+      }
+      barrier.await(10, TimeUnit.SECONDS);
+      ExecStatus last = raced.cancel(reasons[CANCELLERS - 1]);
+      Boolean[] result = worker.get(10, TimeUnit.SECONDS);
+      boolean started = result[0];
+      boolean attached = result[1];
+      List<ExecStatus> wins = new ArrayList<>();
+      for (Future<ExecStatus> canceller : cancellers) {
+        if (canceller.get(10, TimeUnit.SECONDS) != null) {
+          wins.add(canceller.get());
+        }
+      }
+      if (last != null) {
+        wins.add(last);
+      }
+
+      assertTrue(ExecStatus.FINISHED.contains(raced.get()));
+      assertTrue(wins.size() <= 1);
+      assertTrue(interrupts.get() <= 1);
+      assertEquals(started ? 0 : 1, dequeues.get());
+      if (!started) {
+        assertEquals(List.of(ExecStatus.QUEUE), wins);
+        assertEquals(raced.getCancelledAs(), raced.get());
+      } else if (!attached) {
+        assertEquals(List.of(ExecStatus.RUNNING), wins);
+        assertEquals(raced.getCancelledAs(), raced.get());
+      } else if (wins.isEmpty()) {
+        assertEquals(ExecStatus.DONE, raced.get());
+        assertEquals(0, interrupts.get());
+      } else {
+        assertEquals(List.of(ExecStatus.RUNNING), wins);
+        assertEquals(1, interrupts.get());
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package impl.service;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ContextPoolTest {
+  private static final Engine ENGINE = Engine.create();
+  private ContextPool pool;
+  private ResourceGuard guard = new ResourceGuard(0L, 0L, 0L, 10L, 1000L, 5000L, new SimpleMeterRegistry());
+
+  @AfterEach
+  public void closePool() {
+    pool.close();
+    guard.close();
+  }
+
+  @AfterAll
+  public static void closeEngine() {
+    ENGINE.close(true);
+  }
+
+  @SneakyThrows
+  private void awaitIdle(int count) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (pool.getIdleCount() < count && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void shouldPassOnAcquiringPrewarmedContext() {
+    pool = new ContextPool("js", 2, true, ENGINE, guard, new SimpleMeterRegistry());
+    awaitIdle(2);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (Context context = pool.acquire(out)) {
+      context.eval("js", "console.log('hello')");
+    }
+    assertEquals("hello\n", out.toString());
+    assertEquals(1, pool.getHitCount());
+    assertEquals(0, pool.getMissCount());
+  }
+
+  @Test
+  public void shouldPassOnRefillingAfterAcquiring() {
+    pool = new ContextPool("js", 1, true, ENGINE, guard, new SimpleMeterRegistry());
+    awaitIdle(1);
+    pool.acquire(new ByteArrayOutputStream()).close();
+    awaitIdle(1);
+    assertEquals(1, pool.getIdleCount());
+  }
+
+  @Test
+  public void shouldPassOnNotLeakingStateBetweenContexts() {
+    pool = new ContextPool("js", 1, true, ENGINE, guard, new SimpleMeterRegistry());
+    awaitIdle(1);
+    try (Context context = pool.acquire(new ByteArrayOutputStream())) {
+      context.eval("js", "leaked = 1");
+    }
+    awaitIdle(1);
+    try (Context context = pool.acquire(new ByteArrayOutputStream())) {
+      assertEquals("undefined", context.eval("js", "typeof leaked").asString());
+    }
+  }
+
+  @Test
+  public void shouldPassOnCreatingFreshContextForLowerStatementLimit() {
+    guard.close();
+    guard = new ResourceGuard(1000L, 0L, 0L, 10L, 1000L, 5000L, new SimpleMeterRegistry());
+    pool = new ContextPool("js", 1, true, ENGINE, guard, new SimpleMeterRegistry());
+    awaitIdle(1);
+    try (Context context = pool.acquire(new ByteArrayOutputStream(), 10)) {
+      assertThatThrownBy(() -> context.eval("js", "for (i = 0; i < 100; i++) {}"))
+            .isInstanceOf(PolyglotException.class)
+            .matches(ex -> ((PolyglotException) ex).isCancelled());
+    }
+    assertEquals(1, pool.getMissCount());
+    try (Context context = pool.acquire(new ByteArrayOutputStream())) {
+      context.eval("js", "for (i = 0; i < 100; i++) {}");
+    }
+    assertEquals(1, pool.getHitCount());
+  }
+
+  @Test
+  public void shouldPassOnCreatingContextWhenPoolIsDisabled() {
+    pool = new ContextPool("js", 1, false, ENGINE, guard, new SimpleMeterRegistry());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (Context context = pool.acquire(out)) {
+      context.eval("js", "console.log('hello')");
+    }
+    assertEquals("hello\n", out.toString());
+    assertEquals(0, pool.getIdleCount());
+    assertEquals(0, pool.getHitCount());
+    assertEquals(1, pool.getMissCount());
+  }
+}
@@ -0,0 +1,81 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineWatchdogTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final DeadlineWatchdog watchdog = new DeadlineWatchdog(10L, 64, registry);
+
+  @AfterEach
+  public void close() {
+    watchdog.close();
+  }
+
+  @Test
+  public void shouldPassOnExpiringDeadline() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    DeadlineWatchdog.Deadline deadline = watchdog.schedule(100, TimeUnit.MILLISECONDS, latch::countDown);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(deadline.isExpired());
+    assertFalse(deadline.cancel());
+    assertEquals(1, registry.counter("executor.deadlines.expired").count());
+  }
+
+  @Test
+  public void shouldPassOnExpiringDeadlineBeyondOneWheelTurn() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    watchdog.schedule(1500, TimeUnit.MILLISECONDS, latch::countDown);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1500));
+  }
+
+  @Test
+  public void shouldPassOnNotExpiringDeadlineWithLongestDelay() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    DeadlineWatchdog.Deadline deadline = watchdog.schedule(Long.MAX_VALUE, TimeUnit.MILLISECONDS, runs::incrementAndGet);
+    Thread.sleep(200);
+    assertEquals(0, runs.get());
+    assertFalse(deadline.isExpired());
+    assertTrue(deadline.cancel());
+  }
+
+  @Test
+  public void shouldPassOnCancellingDeadline() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    DeadlineWatchdog.Deadline deadline = watchdog.schedule(50, TimeUnit.MILLISECONDS, runs::incrementAndGet);
+    assertTrue(deadline.cancel());
+    Thread.sleep(200);
+    assertEquals(0, runs.get());
+    assertEquals(0, watchdog.getPendingCount());
+  }
+
+  @Test
+  public void shouldPassOnExpiringOnTimeWithManyPendingDeadlines() throws InterruptedException {
+    List<DeadlineWatchdog.Deadline> pending = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      pending.add(watchdog.schedule(1 + i % 600, TimeUnit.SECONDS, () -> { }));
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    watchdog.schedule(100, TimeUnit.MILLISECONDS, latch::countDown);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+    assertEquals(100_000, watchdog.getPendingCount());
+    pending.forEach(DeadlineWatchdog.Deadline::cancel);
+    assertEquals(0, watchdog.getPendingCount());
+  }
+}
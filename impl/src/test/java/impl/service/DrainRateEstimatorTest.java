@@ -0,0 +1,45 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class DrainRateEstimatorTest {
+  private final AtomicLong clock = new AtomicLong();
+  private final DrainRateEstimator estimator = new DrainRateEstimator(4, clock::get);
+
+  private void completeAt(long millis) {
+    clock.set(TimeUnit.MILLISECONDS.toNanos(millis));
+    estimator.recordCompletion();
+  }
+
+  @Test
+  public void shouldPassOnEstimatingWithoutCompletions() {
+    assertEquals(0, estimator.perSecond());
+    assertEquals(60, estimator.secondsToDrain(10, 60));
+  }
+
+  @Test
+  public void shouldPassOnEstimatingOverLastCompletions() {
+    completeAt(0);
+    completeAt(10_000);
+    completeAt(10_500);
+    completeAt(11_000);
+    completeAt(11_500);
+    completeAt(12_000);
+    assertEquals(2.0, estimator.perSecond(), 0.01);
+    assertEquals(5, estimator.secondsToDrain(10, 60));
+    assertEquals(1, estimator.secondsToDrain(0, 60));
+  }
+
+  @Test
+  public void shouldPassOnDecayingWhileNothingCompletes() {
+    completeAt(0);
+    completeAt(500);
+    clock.set(TimeUnit.SECONDS.toNanos(100));
+    assertEquals(0.01, estimator.perSecond(), 0.001);
+    assertEquals(60, estimator.secondsToDrain(10, 60));
+  }
+}
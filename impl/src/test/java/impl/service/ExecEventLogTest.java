@@ -0,0 +1,87 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import impl.service.dto.ExecEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class ExecEventLogTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ExecEventLog log = new ExecEventLog(4, 3, registry);
+
+  private static List<Long> drain(ExecEventLog.Subscription sub) {
+    List<ExecEvent> events = new ArrayList<>();
+    sub.drainTo(events, 100);
+    return events.stream().map(ExecEvent::getSeq).collect(Collectors.toList());
+  }
+
+  @Test
+  public void shouldPassOnFollowingNewEvents() {
+    log.publish("a", ExecStatus.QUEUE);
+    ExecEventLog.Subscription sub = log.subscribe(null);
+    log.publish("a", ExecStatus.RUNNING);
+    log.publish("a", ExecStatus.DONE);
+    assertEquals(List.of(2L, 3L), drain(sub));
+    assertFalse(sub.hasGap());
+    assertEquals(1, registry.get("executor.events.subscribers").gauge().value());
+  }
+
+  @Test
+  public void shouldPassOnResumingAfterSeq() {
+    log.publish("a", ExecStatus.QUEUE);
+    log.publish("a", ExecStatus.RUNNING);
+    log.publish("a", ExecStatus.DONE);
+    ExecEventLog.Subscription sub = log.subscribe(1L);
+    log.publish("a", ExecEventLog.DELETED);
+    assertEquals(List.of(2L, 3L, 4L), drain(sub));
+    assertFalse(sub.hasGap());
+  }
+
+  @Test
+  public void shouldPassOnMarkingGapWhenEventsAreNoLongerRetained() {
+    for (int i = 0; i < 6; i++) {
+      log.publish("a" + i, ExecStatus.QUEUE);
+    }
+    ExecEventLog.Subscription sub = log.subscribe(1L);
+    assertTrue(sub.hasGap());
+    assertEquals(List.of(), drain(sub));
+    assertTrue(log.subscribe(7L).hasGap());
+    assertFalse(log.subscribe(2L).hasGap());
+  }
+
+  @Test
+  public void shouldPassOnDroppingSlowSubscriber() {
+    ExecEventLog.Subscription slow = log.subscribe(null);
+    ExecEventLog.Subscription fast = log.subscribe(null);
+    for (int i = 1; i <= 5; i++) {
+      log.publish("a", ExecStatus.QUEUE);
+      if (i % 2 == 0) {
+        drain(fast);
+      }
+    }
+    assertTrue(slow.isOverflowed());
+    assertFalse(fast.isOverflowed());
+    assertEquals(List.of(1L, 2L, 3L), drain(slow));
+    assertEquals(1, log.getSubscriberCount());
+    assertEquals(1, registry.counter("executor.events.subscribers.dropped").count());
+  }
+
+  @Test
+  public void shouldPassOnResumingReplayLongerThanBuffer() {
+    for (int i = 0; i < 4; i++) {
+      log.publish("a", ExecStatus.QUEUE);
+    }
+    ExecEventLog.Subscription sub = log.subscribe(0L);
+    assertTrue(sub.isOverflowed());
+    assertEquals(List.of(1L, 2L, 3L), drain(sub));
+    ExecEventLog.Subscription resumed = log.subscribe(3L);
+    assertFalse(resumed.isOverflowed());
+    assertEquals(List.of(4L), drain(resumed));
+  }
+}
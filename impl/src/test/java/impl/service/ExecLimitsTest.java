@@ -0,0 +1,21 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class ExecLimitsTest {
+
+  @Test
+  public void shouldPassOnLoweringDefaults() {
+    ExecLimits defaults = new ExecLimits(1000, 0, 2048);
+    assertEquals(new ExecLimits(10, 500, 2048),
+          defaults.lowerTo(new ExecLimits(10, 500, 0)));
+  }
+
+  @Test
+  public void shouldPassOnIgnoringRequestToRaiseDefaults() {
+    ExecLimits defaults = new ExecLimits(1000, 100, 2048);
+    assertEquals(defaults, defaults.lowerTo(new ExecLimits(5000, 1000, 4096)));
+  }
+}
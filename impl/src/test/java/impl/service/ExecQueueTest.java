@@ -0,0 +1,140 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class ExecQueueTest {
+  private static final long COST = TimeUnit.MILLISECONDS.toNanos(1);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ExecQueue queue = new ExecQueue(0, Map.of("team-a", "3"), 1.0, registry);
+  private long seq;
+
+  private QueuedTask task(String tenant, ExecPriority priority) {
+    return new QueuedTask(tenant, priority, System.nanoTime(), 0, seq++,
+          registry.timer("wait"), queue, () -> { });
+  }
+
+  private void submit(String tenant, int count) {
+    for (int i = 0; i < count; i++) {
+      assertTrue(queue.offer(task(tenant, ExecPriority.NORMAL)));
+    }
+  }
+
+  private List<String> serve(int count) {
+    List<String> served = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      QueuedTask next = (QueuedTask) queue.poll();
+      queue.started(next);
+      queue.finished(next, COST);
+      served.add(next.getTenant());
+    }
+    return served;
+  }
+
+  @Test
+  public void shouldPassOnSharingByWeight() {
+    submit("team-a", 10);
+    submit("team-b", 10);
+    List<String> served = serve(8);
+    assertEquals(6, served.stream().filter("team-a"::equals).count());
+    assertEquals(2, served.stream().filter("team-b"::equals).count());
+  }
+
+  @Test
+  public void shouldPassOnGivingUnusedShareToBackloggedTenant() {
+    submit("team-a", 1);
+    submit("team-b", 5);
+    assertEquals(List.of("team-a", "team-b", "team-b", "team-b", "team-b", "team-b"), serve(6));
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void shouldPassOnNotBankingCreditWhileIdle() {
+    submit("team-b", 20);
+    serve(10);
+    submit("team-c", 10);
+    List<String> served = serve(4);
+    assertEquals(2, served.stream().filter("team-c"::equals).count());
+  }
+
+  @Test
+  public void shouldPassOnKeepingPriorityOrderWithinTenant() {
+    long now = System.nanoTime();
+    QueuedTask batch = new QueuedTask("team-a", ExecPriority.BATCH, now,
+          TimeUnit.SECONDS.toNanos(30), seq++, registry.timer("wait"), queue, () -> { });
+    QueuedTask interactive = new QueuedTask("team-a", ExecPriority.INTERACTIVE, now + COST,
+          0, seq++, registry.timer("wait"), queue, () -> { });
+    queue.offer(batch);
+    queue.offer(interactive);
+    assertSame(interactive, queue.poll());
+    assertSame(batch, queue.poll());
+  }
+
+  @Test
+  public void shouldFailOnOfferBeyondCapacity() {
+    ExecQueue bounded = new ExecQueue(2, Map.of(), 1.0, registry);
+    assertTrue(bounded.offer(task("team-a", ExecPriority.NORMAL)));
+    assertTrue(bounded.offer(task("team-b", ExecPriority.NORMAL)));
+    assertFalse(bounded.offer(task("team-a", ExecPriority.NORMAL)));
+    assertEquals(0, bounded.remainingCapacity());
+  }
+
+  @Test
+  public void shouldPassOnReservingBatchPartially() {
+    ExecQueue bounded = new ExecQueue(2, Map.of(), 1.0, registry);
+    assertEquals(2, bounded.reserve(3, false));
+    assertEquals(0, bounded.remainingCapacity());
+    assertFalse(bounded.offer(task("team-a", ExecPriority.NORMAL)));
+    bounded.fill(List.of(task("team-a", ExecPriority.NORMAL), task("team-a", ExecPriority.NORMAL)));
+    assertEquals(2, bounded.size());
+    assertEquals(0, bounded.remainingCapacity());
+  }
+
+  @Test
+  public void shouldFailOnReservingBatchAtomicallyBeyondCapacity() {
+    ExecQueue bounded = new ExecQueue(2, Map.of(), 1.0, registry);
+    assertTrue(bounded.offer(task("team-a", ExecPriority.NORMAL)));
+    assertEquals(0, bounded.reserve(2, true));
+    assertEquals(1, bounded.remainingCapacity());
+    assertEquals(1, bounded.reserve(1, true));
+  }
+
+  @Test
+  public void shouldPassOnReleasingReservedPlaces() {
+    ExecQueue bounded = new ExecQueue(2, Map.of(), 1.0, registry);
+    assertEquals(2, bounded.reserve(2, true));
+    bounded.release(2);
+    assertEquals(0, bounded.size());
+    assertEquals(2, bounded.remainingCapacity());
+    assertTrue(bounded.offer(task("team-a", ExecPriority.NORMAL)));
+  }
+
+  @Test
+  public void shouldPassOnRemovingQueuedTask() {
+    QueuedTask queued = task("team-a", ExecPriority.NORMAL);
+    queue.offer(queued);
+    assertTrue(queue.remove(queued));
+    assertFalse(queue.remove(queued));
+    assertEquals(0, queue.size());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void shouldPassOnRecordingTenantMetrics() {
+    submit("team-a", 1);
+    submit("unknown", 1);
+    serve(2);
+    assertEquals(1, registry.get("executor.tenant.worker.time").tag("tenant", "team-a").timer().count());
+    assertEquals(1, registry.get("executor.tenant.wait").tag("tenant", "other").timer().count());
+  }
+}
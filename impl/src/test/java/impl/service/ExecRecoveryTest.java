@@ -0,0 +1,102 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import impl.repositories.ExecJournal;
+import impl.repositories.ExecRepositoryImpl;
+import impl.repositories.entities.ExecState;
+import impl.repositories.entities.Execution;
+import impl.repositories.entities.RecoveredExec;
+import impl.service.dto.ExecSubmission;
+import impl.service.exceptions.QueueFullException;
+import impl.service.output.OutputArena;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputBufferFactory;
+import impl.service.output.OutputPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ExecRecoveryTest {
+  private static final ExecSubmission SUBMISSION =
+        new ExecSubmission("console.log('hello')", ExecPriority.NORMAL, null, ExecLimits.NONE, 0);
+  private final String FINISHED_ID = UUID.randomUUID().toString();
+  private final String QUEUED_ID = UUID.randomUUID().toString();
+  private final List<String> journaledFinished = new ArrayList<>();
+  private final ExecRepositoryImpl repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L,
+        new ExecEventLog(100, 100, new SimpleMeterRegistry()), ExecJournal.NONE, new SimpleMeterRegistry());
+  private final OutputBufferFactory outputFactory =
+        new OutputBufferFactory(OutputPolicy.TRUNCATE_HEAD, 1024L, 1024L, "", 0.0,
+              new OutputArena(true, false, 1024, new SimpleMeterRegistry()));
+
+  @Mock
+  public ScriptExecutor executor;
+
+  @AfterEach
+  public void close() {
+    repo.close();
+  }
+
+  private ExecJournal journalOf(RecoveredExec... recovered) {
+    return new ExecJournal() {
+      @Override
+      public List<RecoveredExec> recover() {
+        return List.of(recovered);
+      }
+
+      @Override
+      public void finished(String id, Execution execution) {
+        journaledFinished.add(id);
+      }
+    };
+  }
+
+  @Test
+  public void shouldPassOnRestoringFinishedAndResubmittingQueued() {
+    Execution resubmitted = new Execution(new ExecState(ExecStatus.QUEUE),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null), new CompletableFuture<>());
+    Mockito.when(executor.executeAllAsync(List.of(SUBMISSION), false)).thenReturn(List.of(resubmitted));
+    new ExecRecovery(journalOf(
+          new RecoveredExec(FINISHED_ID, SUBMISSION, ExecStatus.DONE, "hello\n".getBytes(StandardCharsets.UTF_8)),
+          new RecoveredExec(QUEUED_ID, SUBMISSION, ExecStatus.QUEUE, new byte[0])),
+          repo, executor, outputFactory).recover();
+
+    Execution finished = repo.getExecution(FINISHED_ID).orElseThrow();
+    assertEquals(ExecStatus.DONE, finished.getStatus().get());
+    assertEquals("hello\n", finished.getOutputStream().toString());
+    assertEquals(resubmitted, repo.getExecution(QUEUED_ID).orElseThrow());
+    assertEquals(1, repo.getFinishedCount());
+    assertEquals(List.of(), journaledFinished);
+  }
+
+  @Test
+  public void shouldPassOnInterruptingQueuedWhenQueueIsFull() {
+    Mockito.when(executor.executeAllAsync(List.of(SUBMISSION), false)).thenThrow(new QueueFullException(1));
+    new ExecRecovery(journalOf(new RecoveredExec(QUEUED_ID, SUBMISSION, ExecStatus.QUEUE, new byte[0])),
+          repo, executor, outputFactory).recover();
+
+    assertEquals(ExecStatus.INTERRUPTED, repo.getExecution(QUEUED_ID).orElseThrow().getStatus().get());
+    assertEquals(List.of(QUEUED_ID), journaledFinished);
+  }
+
+  @Test
+  public void shouldPassOnAllocatingIdsAfterRestoredOnes() {
+    String future = new UUID((System.currentTimeMillis() + 60_000) << 16, 0).toString();
+    new ExecRecovery(journalOf(new RecoveredExec(future, SUBMISSION, ExecStatus.DONE, new byte[0])),
+          repo, executor, outputFactory).recover();
+    String id = repo.addExecution(new Execution(new ExecState(ExecStatus.QUEUE),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null), new CompletableFuture<>()));
+    assertEquals(future, repo.getAllIds().first());
+    assertEquals(id, repo.getAllIds().last());
+  }
+}
@@ -0,0 +1,61 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ResourceGuardTest {
+  private final ResourceGuard guard = new ResourceGuard(0L, 0L, 0L, 10L, 1000L, 5000L, new SimpleMeterRegistry());
+
+  @AfterEach
+  public void close() {
+    guard.close();
+  }
+
+  private void spin(ExecLimits limits, Runnable cancel, AtomicReference<ResourceGuard.Watch> watch,
+                    CountDownLatch stop) {
+    Thread thread = new Thread(() -> {
+      watch.set(guard.watch(limits, cancel));
+      long x = 0;
+      while (stop.getCount() > 0) {
+        x += System.nanoTime() % 7;
+      }
+      watch.get().close();
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Test
+  public void shouldPassOnSamplingWhileCancelBlocks() throws InterruptedException {
+    CountDownLatch stop = new CountDownLatch(1);
+    CountDownLatch firstCancelled = new CountDownLatch(1);
+    AtomicReference<String> cancelThread = new AtomicReference<>();
+    AtomicReference<ResourceGuard.Watch> first = new AtomicReference<>();
+    AtomicReference<ResourceGuard.Watch> second = new AtomicReference<>();
+    spin(new ExecLimits(0, 50, 0), () -> {
+      cancelThread.set(Thread.currentThread().getName());
+      firstCancelled.countDown();
+      try {
+        stop.await();  // a context close that takes long
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }, first, stop);
+    assertTrue(firstCancelled.await(30, TimeUnit.SECONDS));
+    spin(new ExecLimits(0, 50, 0), () -> { }, second, stop);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while ((second.get() == null || !second.get().isExceeded()) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    stop.countDown();
+    assertEquals("resource-guard-cancel", cancelThread.get());
+    assertTrue(second.get().isExceeded());
+  }
+}
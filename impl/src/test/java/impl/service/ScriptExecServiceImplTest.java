@@ -3,22 +3,41 @@ package impl.service;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import impl.repositories.ExecRepository;
+import impl.repositories.entities.ExecState;
 import impl.repositories.entities.Execution;
 import impl.service.dto.ExecInfo;
+import impl.service.dto.IdPage;
+import impl.service.dto.OutputChunk;
 import impl.service.exceptions.DeletionException;
 import impl.service.exceptions.ExecTimeOutException;
+import impl.service.exceptions.InvalidCursorException;
+import impl.service.exceptions.QueueFullException;
 import impl.service.exceptions.UnknownIdException;
-import java.io.ByteArrayOutputStream;
+import impl.service.dto.ExecSubmission;
+import impl.service.output.OutputBuffer;
+import impl.service.output.OutputPolicy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,14 +50,10 @@ public class ScriptExecServiceImplTest {
   private ScriptExecServiceImpl service;
   private final String SCRIPT = "console.log('hello')";
   private final String SCRIPT_ID = "id";
+  private final String TENANT = "team-a";
   private final long TIMEOUT = 1;
   private final TimeUnit TIME_UNIT = TimeUnit.MINUTES;
-  private final Execution EXECUTION = new Execution(
-        new AtomicReference<>(ExecStatus.QUEUE),
-        new ByteArrayOutputStream(),
-        new CompletableFuture<>(),
-        new CompletableFuture<>()
-  );
+  private Execution EXECUTION;
 
   @Mock
   public ScriptExecutor executor;
@@ -46,10 +61,18 @@ public class ScriptExecServiceImplTest {
   @Mock
   public ExecRepository repo;
 
+  private static void finish(Execution exec) {
+    exec.getStatus().start();
+    exec.getStatus().finish(ExecStatus.DONE);
+  }
+
   @BeforeEach
   public void setup() {
     service = new ScriptExecServiceImpl(repo, executor);
-    EXECUTION.getStatus().set(ExecStatus.QUEUE);
+    EXECUTION = new Execution(
+          new ExecState(ExecStatus.QUEUE),
+          new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024, null, null),
+          new CompletableFuture<>());
   }
 
   public String getStatus(Execution exec) {
@@ -64,31 +87,57 @@ public class ScriptExecServiceImplTest {
 
   @Test
   public void shouldPassOnAsyncExec() {
-    Mockito.when(executor.executeAsync(SCRIPT)).thenReturn(EXECUTION);
+    Mockito.when(executor.executeAsync(eq(SCRIPT), eq(ExecPriority.NORMAL), eq(TENANT), eq(ExecLimits.NONE), eq(0L), any()))
+          .thenAnswer(inv -> {
+            inv.<Consumer<Execution>>getArgument(5).accept(EXECUTION);
+            return EXECUTION;
+          });
     Mockito.when(repo.addExecution(EXECUTION)).thenReturn(SCRIPT_ID);
-    assertEquals(SCRIPT_ID, service.executeScriptAsync(SCRIPT));
+    assertEquals(SCRIPT_ID, service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, 0));
+  }
+
+  @Test
+  public void shouldPassOnNotStoringAsyncExecRejectedByQueue() {
+    Mockito.when(executor.executeAsync(eq(SCRIPT), eq(ExecPriority.NORMAL), eq(TENANT), eq(ExecLimits.NONE), eq(0L), any()))
+          .thenThrow(new QueueFullException(1));
+    assertThatThrownBy(() -> service.executeScriptAsync(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, 0))
+          .isInstanceOf(QueueFullException.class);
+    Mockito.verifyNoInteractions(repo);
+  }
+
+  @Test
+  public void shouldPassOnBatchExecWithRejectedTail() {
+    List<ExecSubmission> submissions = List.of(
+          new ExecSubmission(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, 0),
+          new ExecSubmission(SCRIPT, ExecPriority.BATCH, TENANT, ExecLimits.NONE, 0));
+    Mockito.when(executor.executeAllAsync(eq(submissions), eq(false), any()))
+          .thenAnswer(inv -> {
+            inv.<Consumer<List<Execution>>>getArgument(2).accept(List.of(EXECUTION));
+            return List.of(EXECUTION);
+          });
+    Mockito.when(repo.addExecutions(List.of(EXECUTION))).thenReturn(List.of(SCRIPT_ID));
+    assertEquals(Arrays.asList(SCRIPT_ID, null), service.executeScriptsAsync(submissions, false));
   }
 
   //    executeScript
 
   @Test
-  public void shouldPassOnBlockingExecWithGettingStatus()
-        throws InterruptedException, ExecutionException, TimeoutException {
-    Mockito.when(executor.execute(SCRIPT, TIMEOUT, TIME_UNIT)).thenReturn(EXECUTION);
-    ExecInfo res = service.executeScript(SCRIPT, TIMEOUT, TIME_UNIT);
+  public void shouldPassOnBlockingExecWithGettingStatus() {
+    Mockito.when(executor.execute(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, TIMEOUT, TIME_UNIT))
+          .thenReturn(CompletableFuture.completedFuture(EXECUTION));
+    ExecInfo res = service.executeScript(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, TIMEOUT, TIME_UNIT).join();
     assertEquals(getStatus(EXECUTION), res.getStatus());
     assertEquals(getOutput(EXECUTION), res.getOutput());
   }
 
   @Test
-  public void shouldFailOnBlockingExecWhenTimeout()
-        throws InterruptedException, ExecutionException, TimeoutException {
-    Mockito.when(executor.execute(SCRIPT, TIMEOUT, TIME_UNIT)).
-          thenThrow(new TimeoutException());
+  public void shouldFailOnBlockingExecWhenTimeout() {
+    Mockito.when(executor.execute(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, TIMEOUT, TIME_UNIT)).
+          thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
     assertThatThrownBy(() ->
-          service.executeScript(SCRIPT, TIMEOUT, TIME_UNIT))
-          .isInstanceOf(ExecTimeOutException.class)
-          .hasMessage(ExecTimeOutException.generateMessage(TIMEOUT, TIME_UNIT));
+          service.executeScript(SCRIPT, ExecPriority.NORMAL, TENANT, ExecLimits.NONE, TIMEOUT, TIME_UNIT).join())
+          .hasCauseInstanceOf(ExecTimeOutException.class)
+          .hasRootCauseMessage(ExecTimeOutException.generateMessage(TIMEOUT, TIME_UNIT));
   }
 
   //  cancelExecution
@@ -105,7 +154,7 @@ public class ScriptExecServiceImplTest {
   public void shouldFailOnCancellationWithUnknownId() {
     Mockito.when(repo.getExecution(SCRIPT_ID)).
           thenThrow(new UnknownIdException(SCRIPT_ID));
-    assertThatThrownBy(() -> service.getExecutionStatus(SCRIPT_ID))
+    assertThatThrownBy(() -> service.getExecutionStatus(SCRIPT_ID, 0))
           .isInstanceOf(UnknownIdException.class)
           .hasMessage(UnknownIdException.generateMessage(SCRIPT_ID));
   }
@@ -123,7 +172,7 @@ public class ScriptExecServiceImplTest {
 
   @Test
   public void shouldPassOnDeletionOfCancelledExec() {
-    EXECUTION.getStatus().set(ExecStatus.DONE);
+    finish(EXECUTION);
     Mockito.when(repo.getExecution(SCRIPT_ID))
           .thenReturn(Optional.of(EXECUTION));
     assertThatCode(() -> service.deleteExecution(SCRIPT_ID))
@@ -145,16 +194,111 @@ public class ScriptExecServiceImplTest {
   public void shouldPassOnGettingStatus() {
     Mockito.when(repo.getExecution(SCRIPT_ID)).
           thenReturn(Optional.of(EXECUTION));
-    ExecInfo status = service.getExecutionStatus(SCRIPT_ID);
+    ExecInfo status = service.getExecutionStatus(SCRIPT_ID, 0);
     assertEquals(getStatus(EXECUTION), status.getStatus());
     assertEquals(getOutput(EXECUTION), status.getOutput());
   }
 
+  @Test
+  public void shouldPassOnWaitingForStatus() throws IOException {
+    EXECUTION.getOutputStream().write("hello\n".getBytes());
+    Mockito.when(repo.getExecution(SCRIPT_ID)).
+          thenReturn(Optional.of(EXECUTION));
+    CompletableFuture<Execution> finished = new CompletableFuture<>();
+    Mockito.when(executor.whenFinished(EXECUTION, 30, TimeUnit.SECONDS)).thenReturn(finished);
+    CompletableFuture<ExecInfo> status = service.waitForExecutionStatus(SCRIPT_ID, 2, 30, TimeUnit.SECONDS);
+    assertFalse(status.isDone());
+    finish(EXECUTION);
+    finished.complete(EXECUTION);
+    assertEquals(ExecStatus.DONE.name(), status.join().getStatus());
+    assertEquals("llo\n", status.join().getOutput());
+  }
+
+  @Test
+  public void shouldFailOnWaitingForStatusWhenUnknownId() {
+    Mockito.when(repo.getExecution(SCRIPT_ID)).thenReturn(Optional.empty());
+    assertThatThrownBy(() -> service.waitForExecutionStatus(SCRIPT_ID, 0, 30, TimeUnit.SECONDS))
+          .isInstanceOf(UnknownIdException.class);
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusesWithoutOutput() throws IOException {
+    EXECUTION.getOutputStream().write("hello\n".getBytes());
+    Mockito.when(repo.getExecution(SCRIPT_ID)).thenReturn(Optional.of(EXECUTION));
+    Mockito.when(repo.getExecution("unknown")).thenReturn(Optional.empty());
+    List<Optional<ExecInfo>> statuses = service.getExecutionStatuses(List.of(SCRIPT_ID, "unknown"), false);
+    assertEquals(2, statuses.size());
+    assertEquals(getStatus(EXECUTION), statuses.get(0).get().getStatus());
+    assertNull(statuses.get(0).get().getOutput());
+    assertTrue(statuses.get(1).isEmpty());
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusOfNullIdAsUnknown() {
+    Mockito.when(repo.getExecution(SCRIPT_ID)).thenReturn(Optional.of(EXECUTION));
+    List<Optional<ExecInfo>> statuses = service.getExecutionStatuses(Arrays.asList(null, SCRIPT_ID), false);
+    assertTrue(statuses.get(0).isEmpty());
+    assertEquals(getStatus(EXECUTION), statuses.get(1).get().getStatus());
+    Mockito.verify(repo, Mockito.never()).getExecution(null);
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusesWithOutput() throws IOException {
+    EXECUTION.getOutputStream().write("hello\n".getBytes());
+    Mockito.when(repo.getExecution(SCRIPT_ID)).thenReturn(Optional.of(EXECUTION));
+    List<Optional<ExecInfo>> statuses = service.getExecutionStatuses(List.of(SCRIPT_ID), true);
+    assertEquals("hello\n", statuses.get(0).get().getOutput());
+  }
+
+  @Test
+  public void shouldPassOnGettingStatusFromOffset() throws IOException {
+    EXECUTION.getOutputStream().write("hello\n".getBytes());
+    Mockito.when(repo.getExecution(SCRIPT_ID)).
+          thenReturn(Optional.of(EXECUTION));
+    ExecInfo status = service.getExecutionStatus(SCRIPT_ID, 4);
+    assertEquals("o\n", status.getOutput());
+    assertEquals(6, status.getOffset());
+  }
+
+  //    readExecutionOutput
+
+  @Test
+  public void shouldPassOnReadingOutputFromOffset() throws IOException {
+    EXECUTION.getOutputStream().write("hello\n".getBytes());
+    Mockito.when(repo.getExecution(SCRIPT_ID)).
+          thenReturn(Optional.of(EXECUTION));
+    OutputChunk chunk = service.readExecutionOutput(SCRIPT_ID, 2, 1024);
+    assertEquals("llo\n", chunk.getOutput());
+    assertEquals(6, chunk.getOffset());
+    assertFalse(chunk.isFinished());
+  }
+
+  @Test
+  public void shouldPassOnReadingOutputOfFinishedExec() {
+    finish(EXECUTION);
+    Mockito.when(repo.getExecution(SCRIPT_ID)).
+          thenReturn(Optional.of(EXECUTION));
+    OutputChunk chunk = service.readExecutionOutput(SCRIPT_ID, 0, 1024);
+    assertEquals(ExecStatus.DONE.name(), chunk.getStatus());
+    assertTrue(chunk.isFinished());
+  }
+
+  @Test
+  public void shouldPassOnReadingOutputWithoutSplittingChars() throws IOException {
+    byte[] bytes = "a\u00f1".getBytes(StandardCharsets.UTF_8);
+    EXECUTION.getOutputStream().write(bytes, 0, 2);
+    Mockito.when(repo.getExecution(SCRIPT_ID)).
+          thenReturn(Optional.of(EXECUTION));
+    OutputChunk chunk = service.readExecutionOutput(SCRIPT_ID, 0, 1024);
+    assertEquals("a", chunk.getOutput());
+    assertEquals(1, chunk.getOffset());
+  }
+
   @Test
   public void shouldFailOnGettingStatusWithUnknownId() {
     Mockito.when(repo.getExecution(SCRIPT_ID)).
           thenThrow(new UnknownIdException(SCRIPT_ID));
-    assertThatThrownBy(() -> service.getExecutionStatus(SCRIPT_ID))
+    assertThatThrownBy(() -> service.getExecutionStatus(SCRIPT_ID, 0))
           .isInstanceOf(UnknownIdException.class)
           .hasMessage(UnknownIdException.generateMessage(SCRIPT_ID));
   }
@@ -163,21 +307,54 @@ public class ScriptExecServiceImplTest {
 
   @Test
   public void shouldPassOnGettingExecIds() {
-    Mockito.when(repo.getAllIds()).thenReturn(Set.of(SCRIPT_ID));
-    List<String> list = service.getAllExecutionIds();
-    assertEquals(1, list.size());
-    assertEquals(SCRIPT_ID, list.get(0));
+    Mockito.when(repo.getAllIds()).thenReturn(new TreeSet<>(Set.of(SCRIPT_ID)));
+    IdPage page = service.getAllExecutionIds(null, 10);
+    assertEquals(List.of(SCRIPT_ID), page.getIds());
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  public void shouldPassOnPagingThroughExecIds() {
+    TreeSet<String> ids = new TreeSet<>(Set.of("a", "b", "c", "d", "e"));
+    Mockito.when(repo.getAllIds()).thenReturn(ids);
+    IdPage page = service.getAllExecutionIds(null, 2);
+    assertEquals(List.of("a", "b"), page.getIds());
+    ids.add("aa");
+    ids.remove("c");
+    page = service.getAllExecutionIds(page.getNextCursor(), 2);
+    assertEquals(List.of("d", "e"), page.getIds());
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  public void shouldFailOnGettingExecIdsWithInvalidCursor() {
+    Mockito.when(repo.getAllIds()).thenReturn(new TreeSet<>());
+    assertThatThrownBy(() -> service.getAllExecutionIds("not a cursor", 2))
+          .isInstanceOf(InvalidCursorException.class)
+          .hasMessage(InvalidCursorException.generateMessage("not a cursor"));
   }
 
   //    getAllFinishedExecutionIds
 
   @Test
-  public void shouldPassOnGettingFinishedExecIds() {
-    Mockito.when(repo.getAllIds()).thenReturn(Set.of(SCRIPT_ID));
-    Mockito.when(repo.getExecution(SCRIPT_ID)).
-          thenReturn(Optional.of(EXECUTION));
-    List<String> list = service.getFinishedExecutionIds();
-    assertEquals(0, list.size());
+  public void shouldPassOnGettingFinishedExecIdsInFinishOrder() {
+    TreeMap<Long, String> finished = new TreeMap<>(Map.of(1L, "c", 2L, "a", 3L, "d"));
+    Mockito.when(repo.getFinishedIds()).thenReturn(finished);
+    IdPage page = service.getFinishedExecutionIds(null, 2);
+    assertEquals(List.of("c", "a"), page.getIds());
+    finished.put(4L, "b");  // submitted before the cursor, finished after it
+    page = service.getFinishedExecutionIds(page.getNextCursor(), 2);
+    assertEquals(List.of("d", "b"), page.getIds());
+    assertNull(page.getNextCursor());
+    Mockito.verify(repo, Mockito.never()).getAllIds();
+  }
+
+  @Test
+  public void shouldFailOnGettingFinishedExecIdsWithIdCursor() {
+    Mockito.when(repo.getFinishedIds()).thenReturn(new TreeMap<>());
+    String cursor = Base64.getUrlEncoder().encodeToString("a".getBytes(StandardCharsets.UTF_8));
+    assertThatThrownBy(() -> service.getFinishedExecutionIds(cursor, 2))
+          .isInstanceOf(InvalidCursorException.class);
   }
 
 }
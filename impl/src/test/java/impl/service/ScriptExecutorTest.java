@@ -2,21 +2,53 @@ package impl.service;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import impl.repositories.ExecJournal;
+import impl.repositories.ExecRepositoryImpl;
 import impl.repositories.entities.Execution;
+import impl.service.dto.ExecEvent;
+import impl.service.dto.ExecSubmission;
+import impl.service.exceptions.QueueFullException;
+import impl.service.output.OutputArena;
+import impl.service.output.OutputBufferFactory;
+import impl.service.output.OutputPolicy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 public class ScriptExecutorTest {
+  private static final Engine ENGINE = Engine.create();
   private ScriptExecutor executor;
+  private SourceCache sourceCache;
+  private ContextPool contextPool;
+  private ResourceGuard guard;
+  private DeadlineWatchdog watchdog;
+  private OutputBufferFactory outputFactory;
   private final String FINITE_SCRIPT = "console.log('hello')";
   private final String INFINITE_SCRIPT = "while(true){}";
   private final String SCRIPT_WITH_SYNTAX_ERROR = "#@#$.l()";
@@ -25,7 +57,32 @@ public class ScriptExecutorTest {
 
   @BeforeEach
   public void setup() {
-    executor = new ScriptExecutor(1, "js");
+    sourceCache = new SourceCache("js", SourceCache.EvictionPolicy.COUNT, 10L, new SimpleMeterRegistry());
+    guard = new ResourceGuard(0L, 0L, 0L, 10L, 1000L, 1000L, new SimpleMeterRegistry());
+    watchdog = new DeadlineWatchdog(10L, 512, new SimpleMeterRegistry());
+    contextPool = new ContextPool("js", 2, true, ENGINE, guard, new SimpleMeterRegistry());
+    outputFactory = new OutputBufferFactory(OutputPolicy.TRUNCATE_HEAD, 1024L, 1024L, "", 0.0,
+          new OutputArena(true, false, 1024, new SimpleMeterRegistry()));
+    executor = newExecutor(1, 0, 1000L, 30000L, new SimpleMeterRegistry());
+  }
+
+  private ScriptExecutor newExecutor(int threads, int maxQueueDepth, long normalAging, long batchAging,
+                                     MeterRegistry registry) {
+    ExecQueue queue = new ExecQueue(maxQueueDepth, Map.of("team-a", "3"), 1.0, registry);
+    return new ScriptExecutor(threads, 60L, normalAging, batchAging, 0L, queue,
+          sourceCache, contextPool, guard, watchdog, outputFactory, registry);
+  }
+
+  @AfterEach
+  public void closePool() {
+    contextPool.close();
+    guard.close();
+    watchdog.close();
+  }
+
+  @AfterAll
+  public static void closeEngine() {
+    ENGINE.close(true);
   }
 
   @SneakyThrows
@@ -33,6 +90,14 @@ public class ScriptExecutorTest {
     executor.awaitTermination(execution, 1, TimeUnit.MINUTES);
   }
 
+  // Every submission goes through the queue, so a worker has to take one before its place
+  // in the queue is free again.
+  private void awaitRunning(Execution exec) throws InterruptedException {
+    while (exec.getStatus().get() != ExecStatus.RUNNING) {
+      Thread.sleep(10);
+    }
+  }
+
   public String getStatus(Execution exec) {
     return exec.getStatus().get().name();
   }
@@ -67,6 +132,36 @@ public class ScriptExecutorTest {
     assertEquals("", getOutput(exec));
   }
 
+  @Test
+  public void shouldPassOnAsyncExecsWithIsolatedOutputOnSharedEngine() {
+    executor = newExecutor(2, 0, 1000L, 30000L, new SimpleMeterRegistry());
+    Execution exec = executor.executeAsync("console.log('first')");
+    Execution exec1 = executor.executeAsync("console.log('second')");
+    await(exec);
+    await(exec1);
+    assertEquals("first\n", getOutput(exec));
+    assertEquals("second\n", getOutput(exec1));
+  }
+
+  @Test
+  public void shouldPassOnRepeatedAsyncExecWithCachedSource() {
+    await(executor.executeAsync(FINITE_SCRIPT));
+    Execution exec = executor.executeAsync(FINITE_SCRIPT);
+    await(exec);
+    assertEquals(FINITE_SCRIPT_RESULT, getOutput(exec));
+    assertEquals(1, sourceCache.getStats().hitCount());
+  }
+
+  @Test
+  public void shouldPassOnAsyncExecWithTruncatedOutput() {
+    Execution exec = executor.executeAsync("for (i = 0; i < 1000; i++) { console.log(i) }");
+    await(exec);
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+    assertEquals(1024, exec.getOutputStream().size());
+    assertTrue(exec.getOutputStream().isTruncated());
+    assertTrue(getOutput(exec).endsWith("998\n999\n"));
+  }
+
   @Test
   public void shouldFailOnAsyncExecWhenServiceWasClosed() {
     executor.shutdown();
@@ -74,28 +169,341 @@ public class ScriptExecutorTest {
           .isInstanceOf(IllegalStateException.class);
   }
 
+  @Test
+  public void shouldFailOnAsyncExecWhenQueueIsFull() throws ExecutionException, InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 1, 1000L, 30000L, registry);
+    Execution running = executor.executeAsync(INFINITE_SCRIPT);
+    awaitRunning(running);
+    Execution queued = executor.executeAsync(INFINITE_SCRIPT);
+    assertThatThrownBy(() -> executor.executeAsync(FINITE_SCRIPT))
+          .isInstanceOf(QueueFullException.class)
+          .hasMessage(QueueFullException.generateMessage(60));
+    assertEquals(1, registry.counter("executor.queue.rejected").count());
+    assertEquals(1, registry.get("executor.queue.depth").gauge().value());
+    executor.cancelExec(queued);
+    executor.cancelExec(running);
+    await(running);
+    await(queued);
+  }
+
+  private List<String> runBehindBlocker(Map<String, ExecPriority> queued, long pauseMs)
+        throws ExecutionException, InterruptedException {
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    Execution blocker = executor.executeAsync(INFINITE_SCRIPT);
+    List<Execution> execs = new ArrayList<>();
+    for (Map.Entry<String, ExecPriority> entry : queued.entrySet()) {
+      Execution exec = executor.executeAsync(FINITE_SCRIPT, entry.getValue(), null, ExecLimits.NONE, 0);
+      exec.getComputation().whenComplete((res, ex) -> order.add(entry.getKey()));
+      execs.add(exec);
+      Thread.sleep(pauseMs);
+    }
+    executor.cancelExec(blocker);
+    for (Execution exec : execs) {
+      await(exec);
+    }
+    return order;
+  }
+
+  @Test
+  public void shouldPassOnRunningQueuedExecsByPriority() throws ExecutionException, InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 0, 60_000L, 120_000L, registry);
+    Map<String, ExecPriority> queued = new LinkedHashMap<>();
+    queued.put("batch", ExecPriority.BATCH);
+    queued.put("normal", ExecPriority.NORMAL);
+    queued.put("interactive", ExecPriority.INTERACTIVE);
+    assertEquals(List.of("interactive", "normal", "batch"), runBehindBlocker(queued, 0));
+    assertEquals(1, registry.get("executor.queue.wait").tag("priority", "interactive").timer().count());
+    assertEquals(1, registry.get("executor.queue.wait").tag("priority", "batch").timer().count());
+  }
+
+  @Test
+  public void shouldPassOnRunningAgedLowPriorityExecFirst() throws ExecutionException, InterruptedException {
+    executor = newExecutor(1, 0, 60_000L, 50L, new SimpleMeterRegistry());
+    Map<String, ExecPriority> queued = new LinkedHashMap<>();
+    queued.put("batch", ExecPriority.BATCH);
+    queued.put("interactive", ExecPriority.INTERACTIVE);
+    assertEquals(List.of("batch", "interactive"), runBehindBlocker(queued, 200));
+  }
+
+  //    metrics
+
+  @Test
+  public void shouldPassOnRecordingExecMetrics() throws ExecutionException, InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(2, 0, 1000L, 30000L, registry);
+    await(executor.executeAsync(FINITE_SCRIPT));
+    Execution running = executor.executeAsync(INFINITE_SCRIPT);
+    while (running.getStatus().get() != ExecStatus.RUNNING) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, registry.get("executor.pool.active").gauge().value());
+    assertEquals(0.5, registry.get("executor.pool.saturation").gauge().value());
+    executor.cancelExec(running);
+    await(running);
+    assertEquals(1, registry.get("executor.executions.finished").tag("status", "done").counter().count());
+    assertEquals(1, registry.get("executor.executions.finished").tag("status", "cancelled").counter().count());
+    assertEquals(2, registry.get("executor.eval").timer().count());
+    assertEquals(1, registry.get("executor.cancellation.latency").tag("reason", "user").timer().count());
+  }
+
+  @Test
+  public void shouldPassOnRecordingTimeoutCancellationLatency() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 0, 1000L, 30000L, registry);
+    Execution exec = executor.executeAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 100);
+    await(exec);
+    Timer latency = registry.get("executor.cancellation.latency").tag("reason", "timeout").timer();
+    Counter finished = registry.get("executor.executions.finished").tag("status", "timed_out").counter();
+    // both are recorded by completion callbacks, which may still be running when await returns
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((latency.count() == 0 || finished.count() == 0) && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertEquals(1, latency.count());
+    assertEquals(1, finished.count());
+  }
+
+  //    batch
+
+  private ExecSubmission submission(String script) {
+    return new ExecSubmission(script, ExecPriority.NORMAL, null, ExecLimits.NONE, 0);
+  }
+
+  @Test
+  public void shouldPassOnBatchExec() {
+    List<Execution> execs = executor.executeAllAsync(List.of(
+          submission("console.log('first')"), submission("console.log('second')")), false);
+    assertEquals(2, execs.size());
+    execs.forEach(this::await);
+    assertEquals("first\n", getOutput(execs.get(0)));
+    assertEquals("second\n", getOutput(execs.get(1)));
+  }
+
+  @Test
+  public void shouldPassOnAdmittingPartOfBatch() throws ExecutionException, InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 2, 1000L, 30000L, registry);
+    List<Execution> execs = executor.executeAllAsync(List.of(
+          submission(INFINITE_SCRIPT), submission(FINITE_SCRIPT), submission(FINITE_SCRIPT)), false);
+    assertEquals(2, execs.size());
+    assertEquals(1, registry.counter("executor.queue.rejected").count());
+    executor.cancelExec(execs.get(0));
+    await(execs.get(1));
+    assertEquals(ExecStatus.DONE.name(), getStatus(execs.get(1)));
+  }
+
+  @Test
+  public void shouldFailOnAtomicBatchWhenQueueCannotTakeIt() throws ExecutionException, InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 2, 1000L, 30000L, registry);
+    Execution queued = executor.executeAsync(INFINITE_SCRIPT);
+    assertThatThrownBy(() -> executor.executeAllAsync(List.of(
+          submission(FINITE_SCRIPT), submission(FINITE_SCRIPT), submission(FINITE_SCRIPT)), true))
+          .isInstanceOf(QueueFullException.class);
+    assertEquals(3, registry.counter("executor.queue.rejected").count());
+    executor.cancelExec(queued);
+  }
+
+  //    journal
+
+  @Test
+  public void shouldPassOnNotJournalingExecsRejectedByQueue() throws InterruptedException {
+    List<String> journaled = new ArrayList<>();
+    ExecJournal recording = new ExecJournal() {
+      @Override
+      public void submitted(List<String> ids, List<Execution> executions) {
+        journaled.addAll(ids);
+      }
+    };
+    ExecEventLog events = new ExecEventLog(100, 100, new SimpleMeterRegistry());
+    ExecRepositoryImpl repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L, events, recording,
+          new SimpleMeterRegistry());
+    executor = newExecutor(1, 1, 1000L, 30000L, new SimpleMeterRegistry());
+    ScriptExecServiceImpl service = new ScriptExecServiceImpl(repo, executor);
+    String running = service.executeScriptAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0);
+    awaitRunning(repo.getExecution(running).get());
+    String queued = service.executeScriptAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0);
+    ExecEventLog.Subscription sub = events.subscribe(null);
+
+    assertThatThrownBy(() -> service.executeScriptAsync(FINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0))
+          .isInstanceOf(QueueFullException.class);
+    assertThatThrownBy(() -> service.executeScriptsAsync(
+          List.of(submission(FINITE_SCRIPT), submission(FINITE_SCRIPT)), true))
+          .isInstanceOf(QueueFullException.class);
+    List<ExecEvent> seen = new ArrayList<>();
+    sub.drainTo(seen, 100);
+    assertTrue(seen.isEmpty());
+    assertEquals(List.of(running, queued), journaled);
+    assertEquals(Set.of(running, queued), repo.getAllIds());
+
+    service.cancelExecution(queued);
+    service.cancelExecution(running);
+    await(repo.getExecution(running).get());
+    repo.close();
+  }
+
+  @Test
+  public void shouldPassOnNotQueueingExecsWhenJournalFails() throws IOException {
+    List<Execution> journaled = new ArrayList<>();
+    ExecJournal failing = new ExecJournal() {
+      @Override
+      public void submitted(List<String> ids, List<Execution> executions) {
+        journaled.addAll(executions);
+        throw new UncheckedIOException(new IOException("No space left on device"));
+      }
+    };
+    ExecRepositoryImpl repo = new ExecRepositoryImpl(0L, 0L, 0L, 60_000L,
+          new ExecEventLog(100, 100, new SimpleMeterRegistry()), failing, new SimpleMeterRegistry());
+    ScriptExecServiceImpl service = new ScriptExecServiceImpl(repo, executor);
+    assertThatThrownBy(() -> service.executeScriptAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 0))
+          .isInstanceOf(UncheckedIOException.class);
+    assertThatThrownBy(() -> service.executeScriptsAsync(List.of(submission(INFINITE_SCRIPT)), false))
+          .isInstanceOf(UncheckedIOException.class);
+    repo.close();
+
+    assertTrue(repo.getAllIds().isEmpty());
+    assertEquals(2, journaled.size());
+    for (Execution exec : journaled) {
+      assertEquals(ExecStatus.CANCELLED.name(), getStatus(exec));
+      assertTrue(exec.getComputation().isDone());
+      exec.getOutputStream().write(new byte[10]);
+      assertEquals(0, exec.getOutputStream().size());  // released
+    }
+    Execution exec = executor.executeAsync(FINITE_SCRIPT);  // the only worker is free
+    await(exec);
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+  }
+
+  //    limits
+
+  private Execution executeWithLimits(String script, ExecLimits limits) {
+    Execution exec = executor.executeAsync(script, ExecPriority.NORMAL, null, limits, 0);
+    await(exec);
+    return exec;
+  }
+
+  @Test
+  public void shouldPassOnStoppingExecAtStatementLimit() {
+    Execution exec = executeWithLimits(INFINITE_SCRIPT, new ExecLimits(1000, 0, 0));
+    assertEquals(ExecStatus.LIMIT_EXCEEDED.name(), getStatus(exec));
+  }
+
+  @Test
+  public void shouldPassOnStoppingExecAtCpuTimeLimit() {
+    Execution exec = executeWithLimits(INFINITE_SCRIPT, new ExecLimits(0, 200, 0));
+    assertEquals(ExecStatus.LIMIT_EXCEEDED.name(), getStatus(exec));
+  }
+
+  @Test
+  public void shouldPassOnStoppingExecAtAllocationLimit() {
+    Execution exec = executeWithLimits(
+          "let a = []; while(true) { a.push({x: 1}); if (a.length > 100000) { a = []; } }",
+          new ExecLimits(0, 0, 10 * 1024 * 1024));
+    assertEquals(ExecStatus.LIMIT_EXCEEDED.name(), getStatus(exec));
+  }
+
+  @Test
+  public void shouldPassOnFinishingExecWithinLimits() {
+    Execution exec = executeWithLimits(FINITE_SCRIPT, new ExecLimits(1000, 10_000, 100 * 1024 * 1024));
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+    assertEquals(FINITE_SCRIPT_RESULT, getOutput(exec));
+  }
+
+  @Test
+  public void shouldPassOnStoppingExecAtStatementLimitAfterCancelOnSameEngine() throws InterruptedException {
+    Execution cancelled = executor.executeAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null,
+          new ExecLimits(Long.MAX_VALUE, 0, 0), 0);
+    while (cancelled.getStatus().get() != ExecStatus.RUNNING) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(200);
+    executor.cancelExec(cancelled);
+    await(cancelled);
+    assertEquals(ExecStatus.CANCELLED.name(), getStatus(cancelled));
+
+    Execution exec = executeWithLimits(INFINITE_SCRIPT, new ExecLimits(1000, 0, 0));
+    assertEquals(ExecStatus.LIMIT_EXCEEDED.name(), getStatus(exec));
+  }
+
+  @Test
+  public void shouldPassOnBackingStatementLimitWithCpuTime() {
+    assertEquals(new ExecLimits(1000, 1000, 0), guard.effective(new ExecLimits(1000, 0, 0)));
+    assertEquals(new ExecLimits(10_000_000_000L, 10_000_000, 0), guard.effective(new ExecLimits(10_000_000_000L, 0, 0)));
+    assertEquals(new ExecLimits(1000, 200, 0), guard.effective(new ExecLimits(1000, 200, 0)));
+    assertEquals(ExecLimits.NONE, guard.effective(ExecLimits.NONE));
+  }
+
+  @Test
+  public void shouldPassOnIgnoringRequestToRaiseDefaultLimit() {
+    contextPool.close();
+    guard.close();
+    guard = new ResourceGuard(1000L, 0L, 0L, 10L, 1000L, 1000L, new SimpleMeterRegistry());
+    contextPool = new ContextPool("js", 2, true, ENGINE, guard, new SimpleMeterRegistry());
+    executor = newExecutor(1, 0, 1000L, 30000L, new SimpleMeterRegistry());
+    Execution exec = executeWithLimits(INFINITE_SCRIPT, new ExecLimits(Long.MAX_VALUE, 0, 0));
+    assertEquals(ExecStatus.LIMIT_EXCEEDED.name(), getStatus(exec));
+  }
+
+  //    timeouts
+
+  @Test
+  public void shouldPassOnTimingOutRunningExec() {
+    Execution exec = executor.executeAsync(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 200);
+    await(exec);
+    assertEquals(ExecStatus.TIMED_OUT.name(), getStatus(exec));
+    assertEquals(0, watchdog.getPendingCount());
+  }
+
+  @Test
+  public void shouldPassOnTimingOutQueuedExec() throws Exception {
+    Execution blocker = executor.executeAsync(INFINITE_SCRIPT);
+    Execution exec = executor.executeAsync(FINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 100);
+    await(exec);
+    assertEquals(ExecStatus.TIMED_OUT.name(), getStatus(exec));
+    assertEquals(ExecStatus.RUNNING.name(), getStatus(blocker));
+    assertEquals("", getOutput(exec));
+    executor.cancelExec(blocker);
+  }
+
+  @Test
+  public void shouldPassOnTimingOutByDefault() {
+    executor = new ScriptExecutor(1, 60L, 1000L, 30000L, 200L,
+          new ExecQueue(0, Map.of(), 1.0, new SimpleMeterRegistry()),
+          sourceCache, contextPool, guard, watchdog, outputFactory, new SimpleMeterRegistry());
+    Execution exec = executor.executeAsync(INFINITE_SCRIPT);
+    await(exec);
+    assertEquals(ExecStatus.TIMED_OUT.name(), getStatus(exec));
+  }
+
+  @Test
+  public void shouldPassOnCancellingDeadlineOfFinishedExec() {
+    Execution exec = executor.executeAsync(FINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 60_000);
+    await(exec);
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+    assertEquals(0, watchdog.getPendingCount());
+  }
+
   //    executeScript
 
   @Test
-  public void shouldPassOnBlockingExec()
-        throws ExecutionException, InterruptedException, TimeoutException {
-    Execution exec = executor.execute(FINITE_SCRIPT, 30, TimeUnit.SECONDS);
+  public void shouldPassOnBlockingExec() {
+    Execution exec = executor.execute(FINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 30, TimeUnit.SECONDS).join();
     assertEquals(ExecStatus.DONE.name(), getStatus(exec));
     assertEquals(FINITE_SCRIPT_RESULT, getOutput(exec));
   }
 
   @Test
-  public void shouldPassOnBlockingExecWithSyntaxError()
-        throws ExecutionException, InterruptedException, TimeoutException {
-    Execution exec = executor.execute(SCRIPT_WITH_SYNTAX_ERROR, 30, TimeUnit.SECONDS);
+  public void shouldPassOnBlockingExecWithSyntaxError() {
+    Execution exec = executor.execute(SCRIPT_WITH_SYNTAX_ERROR, ExecPriority.NORMAL, null, ExecLimits.NONE, 30, TimeUnit.SECONDS).join();
     assertEquals(ExecStatus.DONE_WITH_SYNTAX_ERROR.name(), getStatus(exec));
     assertEquals("", getOutput(exec));
   }
 
   @Test
-  public void shouldPassOnBlockingExecWithException()
-        throws ExecutionException, InterruptedException, TimeoutException {
-    Execution exec = executor.execute(SCRIPT_WITH_EXCEPTION, 30, TimeUnit.SECONDS);
+  public void shouldPassOnBlockingExecWithException() {
+    Execution exec = executor.execute(SCRIPT_WITH_EXCEPTION, ExecPriority.NORMAL, null, ExecLimits.NONE, 30, TimeUnit.SECONDS).join();
     assertEquals(ExecStatus.DONE_WITH_EXCEPTION.name(), getStatus(exec));
     assertEquals("", getOutput(exec));
   }
@@ -104,15 +512,85 @@ public class ScriptExecutorTest {
   public void shouldFailOnBlockingExecWhenServiceWasClosed() {
     executor.shutdown();
     assertThatThrownBy(() ->
-          executor.execute(FINITE_SCRIPT, 30, TimeUnit.SECONDS))
+          executor.execute(FINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 30, TimeUnit.SECONDS))
           .isInstanceOf(IllegalStateException.class);
   }
 
   @Test
   public void shouldFailOnBlockingExecWhenTimeout() {
     assertThatThrownBy(() ->
-          executor.execute(INFINITE_SCRIPT, 1, TimeUnit.SECONDS))
-          .isInstanceOf(TimeoutException.class);
+          executor.execute(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 1, TimeUnit.SECONDS).join())
+          .hasCauseInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  public void shouldPassOnCancellingBlockingExecWhenTimeout() {
+    CompletableFuture<Execution> future = executor.execute(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 1, TimeUnit.SECONDS);
+    assertThatThrownBy(future::join).hasCauseInstanceOf(TimeoutException.class);
+    Execution exec = executor.executeAsync(FINITE_SCRIPT);
+    await(exec);
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+  }
+
+  // The JDK timer thread is held up, as a slow context close on it would do; the timeout of a
+  // blocking execution still has to fire and cancel the script.
+  @Test
+  public void shouldPassOnCancellingBlockingExecWhileJdkTimerThreadIsBusy() throws InterruptedException {
+    CountDownLatch busy = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicReference<String> timerThread = new AtomicReference<>();
+    CompletableFuture<Void> blocker = new CompletableFuture<>();
+    blocker.whenComplete((res, ex) -> {
+      timerThread.set(Thread.currentThread().getName());
+      busy.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    blocker.orTimeout(1, TimeUnit.MILLISECONDS);
+    try {
+      assertTrue(busy.await(30, TimeUnit.SECONDS));
+      assertEquals("CompletableFutureDelayScheduler", timerThread.get());
+      CompletableFuture<Execution> future = executor.execute(INFINITE_SCRIPT, ExecPriority.NORMAL, null, ExecLimits.NONE, 1, TimeUnit.SECONDS);
+      assertThatThrownBy(() -> future.get(30, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+      Execution exec = executor.executeAsync(FINITE_SCRIPT);  // the only worker was freed by the cancel
+      await(exec);
+      assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  //  whenFinished
+
+  @Test
+  public void shouldPassOnWaitingUntilExecFinishes() {
+    Execution exec = executor.executeAsync("let x = 0; for (let i = 0; i < 1000000; i++) { x += i }");
+    CompletableFuture<Execution> finished = executor.whenFinished(exec, 1, TimeUnit.MINUTES);
+    assertTrue(finished.join().getComputation().isDone());
+    assertEquals(ExecStatus.DONE.name(), getStatus(exec));
+    assertEquals(0, watchdog.getPendingCount());
+  }
+
+  @Test
+  public void shouldPassOnWaitingUntilTimeout() {
+    Execution exec = executor.executeAsync(INFINITE_SCRIPT);
+    long start = System.nanoTime();
+    Execution waited = executor.whenFinished(exec, 200, TimeUnit.MILLISECONDS).join();
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    assertFalse(waited.getComputation().isDone());
+    executor.cancelExec(exec);
+    await(exec);
+  }
+
+  @Test
+  public void shouldPassOnWaitingForFinishedExec() {
+    Execution exec = executor.executeAsync(FINITE_SCRIPT);
+    await(exec);
+    assertTrue(executor.whenFinished(exec, 1, TimeUnit.MINUTES).isDone());
+    assertEquals(0, watchdog.getPendingCount());
   }
 
   //  cancelExec
@@ -166,6 +644,70 @@ public class ScriptExecutorTest {
     assertEquals(0, successLatch.getCount());
   }
 
+  @Test
+  public void shouldPassOnCancellingQueuedExecWithoutContext() throws InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(1, 1, 1000L, 30000L, registry);
+    Execution running = executor.executeAsync(INFINITE_SCRIPT);
+    awaitRunning(running);
+    Execution queued = executor.executeAsync(FINITE_SCRIPT);
+    long acquired = contextPool.getHitCount() + contextPool.getMissCount();
+    executor.cancelExec(queued);
+    assertTrue(queued.getComputation().isDone());
+    assertEquals(ExecStatus.CANCELLED.name(), getStatus(queued));
+    assertEquals(0, registry.get("executor.queue.depth").gauge().value());
+    Execution next = executor.executeAsync(FINITE_SCRIPT);
+    executor.cancelExec(running);
+    await(running);
+    await(next);
+    assertEquals(ExecStatus.DONE.name(), getStatus(next));
+    assertEquals("", getOutput(queued));
+    assertEquals(acquired + 1, contextPool.getHitCount() + contextPool.getMissCount());
+  }
+
+  // Submissions race with cancels from several threads and with their own deadlines;
+  // every execution has to finish exactly once and leave nothing behind.
+  @Test
+  public void shouldPassOnRacingCancellationsUnderLoad() throws InterruptedException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    executor = newExecutor(2, 0, 1000L, 30000L, registry);
+    List<String> scripts = List.of(FINITE_SCRIPT, INFINITE_SCRIPT,
+          "let x = 0; for (let i = 0; i < 100000; i++) { x += i }");
+    List<Execution> execs = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService cancellers = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 300; i++) {
+      String script = scripts.get(i % scripts.size());
+      Execution exec = executor.executeAsync(script, ExecPriority.NORMAL, null, ExecLimits.NONE,
+            script.equals(INFINITE_SCRIPT) ? 50 + i % 7 * 20 : 0);
+      execs.add(exec);
+      if (i % 2 == 0) {
+        int delay = i % 5;
+        cancellers.execute(() -> {
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException ex) {
+            return;
+          }
+          executor.cancelExec(exec);
+          executor.cancelExec(exec);
+        });
+      }
+    }
+    cancellers.shutdown();
+    assertTrue(cancellers.awaitTermination(1, TimeUnit.MINUTES));
+    for (Execution exec : execs) {
+      await(exec);
+      assertTrue(ExecStatus.FINISHED.contains(exec.getStatus().get()));
+    }
+    double finished = registry.get("executor.executions.finished").counters().stream()
+          .mapToDouble(counter -> counter.count())
+          .sum();
+    assertEquals(execs.size(), (long) finished);
+    assertEquals(0, registry.get("executor.queue.depth").gauge().value());
+    assertEquals(0, guard.getWatchedCount());
+    assertEquals(0, watchdog.getPendingCount());
+  }
+
   //     awaitTermination
 
   @Test
@@ -0,0 +1,58 @@
+package impl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.graalvm.polyglot.Source;
+import org.junit.jupiter.api.Test;
+
+public class SourceCacheTest {
+  private final String SCRIPT = "console.log('hello')";
+  private final String SCRIPT_1 = "console.log('hi')";
+  private final String SCRIPT_2 = "console.log('bye')";
+
+  private SourceCache cache(SourceCache.EvictionPolicy policy, long maxSize) {
+    return new SourceCache("js", policy, maxSize, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void shouldPassOnGettingCachedSource() {
+    SourceCache cache = cache(SourceCache.EvictionPolicy.COUNT, 10);
+    Source source = cache.get(SCRIPT);
+    assertSame(source, cache.get(SCRIPT));
+    assertEquals(SCRIPT, source.getCharacters().toString());
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(1, cache.getStats().missCount());
+  }
+
+  @Test
+  public void shouldPassOnGettingDifferentSourcesForDifferentScripts() {
+    SourceCache cache = cache(SourceCache.EvictionPolicy.COUNT, 10);
+    assertNotSame(cache.get(SCRIPT), cache.get(SCRIPT_1));
+    assertEquals(2, cache.getStats().missCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void shouldPassOnEvictionByCount() {
+    SourceCache cache = cache(SourceCache.EvictionPolicy.COUNT, 2);
+    cache.get(SCRIPT);
+    cache.get(SCRIPT_1);
+    cache.get(SCRIPT_2);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getStats().evictionCount());
+  }
+
+  @Test
+  public void shouldPassOnEvictionByWeight() {
+    SourceCache cache = cache(SourceCache.EvictionPolicy.WEIGHT, 100);
+    for (int i = 0; i < 50; i++) {
+      cache.get(String.format("console.log(%06d)", i));
+    }
+    assertTrue(cache.size() <= 5);
+    assertEquals(50 - cache.size(), cache.getStats().evictionCount());
+  }
+}
@@ -0,0 +1,298 @@
+package impl.service.output;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+public class OutputBufferTest {
+
+  @TempDir
+  public Path spillDir;
+
+  private OutputBuffer buffer(OutputPolicy policy, long maxBytes, long memoryThreshold) {
+    return new OutputBuffer(policy, maxBytes, memoryThreshold, spillDir, null);
+  }
+
+  private OutputBuffer archivable(OutputArena arena, long maxBytes) {
+    return new OutputBuffer(OutputPolicy.TRUNCATE_HEAD, maxBytes, maxBytes, spillDir, null, arena);
+  }
+
+  private byte[] bytes(int from, int to) {
+    byte[] res = new byte[to - from];
+    for (int i = from; i < to; i++) {
+      res[i - from] = (byte) i;
+    }
+    return res;
+  }
+
+  @Test
+  public void shouldPassOnWritingWithinLimit() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 1024, 1024);
+    buffer.write("hello\n".getBytes());
+    assertEquals("hello\n", buffer.toString());
+    assertEquals(6, buffer.size());
+    assertFalse(buffer.isTruncated());
+    assertFalse(buffer.isSpilled());
+  }
+
+  @Test
+  public void shouldPassOnWritingAcrossChunks() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100_000, 100_000);
+    byte[] data = new byte[20_000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    buffer.write(data, 0, 10_000);
+    buffer.write(data, 10_000, 10_000);
+    assertArrayEquals(data, buffer.toByteArray());
+  }
+
+  @Test
+  public void shouldPassOnTruncatingHead() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100, 100);
+    for (int i = 0; i < 250; i += 50) {
+      buffer.write(bytes(i, i + 50));
+    }
+    assertArrayEquals(bytes(150, 250), buffer.toByteArray());
+    assertTrue(buffer.isTruncated());
+  }
+
+  @Test
+  public void shouldPassOnTruncatingHeadWithWriteLargerThanLimit() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100, 100);
+    buffer.write(bytes(0, 10));
+    buffer.write(bytes(0, 250));
+    assertArrayEquals(bytes(150, 250), buffer.toByteArray());
+    assertTrue(buffer.isTruncated());
+  }
+
+  @Test
+  public void shouldPassOnTruncatingTail() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_TAIL, 100, 100);
+    for (int i = 0; i < 250; i += 50) {
+      buffer.write(bytes(i, i + 50));
+    }
+    assertArrayEquals(bytes(0, 100), buffer.toByteArray());
+    assertTrue(buffer.isTruncated());
+  }
+
+  @Test
+  public void shouldPassOnReadingSlice() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100_000, 100_000);
+    buffer.write(bytes(0, 100));
+    OutputBuffer.Slice slice = buffer.read(40, 30);
+    assertEquals(40, slice.getPosition());
+    assertEquals(100, slice.getEnd());
+    assertArrayEquals(bytes(40, 70), slice.getBytes());
+    assertEquals(0, buffer.read(100, 30).getBytes().length);
+  }
+
+  @Test
+  public void shouldPassOnReadingSliceAfterTruncatedHead() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100, 100);
+    buffer.write(bytes(0, 250));
+    OutputBuffer.Slice slice = buffer.read(0, 50);
+    assertEquals(150, slice.getPosition());
+    assertEquals(250, slice.getEnd());
+    assertArrayEquals(bytes(150, 200), slice.getBytes());
+  }
+
+  @Test
+  public void shouldPassOnReadingSliceOfSpilledOutput() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 200, 50);
+    buffer.write(bytes(0, 100));
+    assertArrayEquals(bytes(60, 100), buffer.read(60, 1000).getBytes());
+  }
+
+  @Test
+  public void shouldPassOnReadingResourceRange() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.TRUNCATE_HEAD, 100_000, 100_000);
+    buffer.write(bytes(0, 100));
+    buffer.write(bytes(0, 20_000), 0, 20_000);
+    Resource resource = buffer.asResource();
+    assertEquals(20_100, resource.contentLength());
+    try (InputStream in = resource.getInputStream()) {
+      assertEquals(20_050, in.skip(20_050));
+      assertArrayEquals(Arrays.copyOfRange(bytes(0, 20_000), 19_950, 20_000), in.readAllBytes());
+    }
+  }
+
+  @Test
+  public void shouldPassOnSpillingToDisk() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 200, 50);
+    buffer.write(bytes(0, 40));
+    assertFalse(buffer.isSpilled());
+    buffer.write(bytes(40, 100));
+    assertTrue(buffer.isSpilled());
+    assertFalse(buffer.isTruncated());
+    assertArrayEquals(bytes(0, 100), buffer.toByteArray());
+    Resource resource = buffer.asResource();
+    assertTrue(resource instanceof FileSystemResource);
+    assertEquals(100, resource.contentLength());
+  }
+
+  @Test
+  public void shouldPassOnTruncatingSpilledOutput() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 100, 50);
+    buffer.write(bytes(0, 150));
+    assertTrue(buffer.isSpilled());
+    assertTrue(buffer.isTruncated());
+    assertArrayEquals(bytes(0, 100), buffer.toByteArray());
+  }
+
+  @Test
+  public void shouldPassOnReleasingSpilledOutput() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 200, 50);
+    buffer.write(bytes(0, 100));
+    Path file = buffer.asResource().getFile().toPath();
+    buffer.release();
+    assertFalse(Files.exists(file));
+    buffer.write(bytes(0, 10));
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void shouldPassOnReadingSpilledOutputAfterArchiving() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 200, 50);
+    buffer.write(bytes(0, 100));
+    buffer.archive();
+    buffer.write(bytes(100, 110));
+    assertTrue(buffer.isSpilled());
+    assertEquals(100, buffer.size());
+    assertArrayEquals(bytes(0, 100), buffer.toByteArray());
+    assertArrayEquals(bytes(40, 60), buffer.read(40, 20).getBytes());
+    Path file = buffer.asResource().getFile().toPath();
+    buffer.release();
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void shouldFailOnReadingPastEndOfShortSpillFile() throws IOException {
+    OutputBuffer buffer = buffer(OutputPolicy.SPILL, 200, 50);
+    buffer.write(bytes(0, 100));
+    buffer.archive();
+    Files.write(buffer.asResource().getFile().toPath(), bytes(0, 10));
+    assertThatThrownBy(buffer::toByteArray)
+          .isInstanceOf(UncheckedIOException.class)
+          .hasCauseInstanceOf(EOFException.class);
+  }
+
+  @Test
+  public void shouldPassOnKeepingOutputInMemoryWhenSpillFails() throws IOException {
+    OutputBuffer buffer = new OutputBuffer(OutputPolicy.SPILL, 200, 50, spillDir.resolve("missing"), null);
+    buffer.write(bytes(0, 40));
+    assertThatThrownBy(() -> buffer.write(bytes(40, 100))).isInstanceOf(IOException.class);
+    assertFalse(buffer.isSpilled());
+    assertArrayEquals(bytes(0, 40), buffer.toByteArray());
+    buffer.release();
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void shouldPassOnArchivingOffHeap() throws IOException {
+    OutputArena arena = new OutputArena(true, false, 1024, new SimpleMeterRegistry());
+    OutputBuffer buffer = archivable(arena, 100_000);
+    byte[] data = bytes(0, 20_000);
+    buffer.write(data);
+    assertEquals(24_576, arena.getHeapBytes());
+
+    buffer.archive();
+    assertTrue(buffer.isArchived());
+    assertEquals(0, arena.getHeapBytes());
+    assertEquals(20_000, arena.getOffHeapBytes());
+    assertArrayEquals(data, buffer.toByteArray());
+    assertArrayEquals(Arrays.copyOfRange(data, 9_000, 9_500), buffer.read(9_000, 500).getBytes());
+
+    buffer.write(bytes(0, 10));
+    assertEquals(20_000, buffer.size());
+    buffer.release();
+    assertEquals(0, arena.getOffHeapBytes());
+    assertEquals(0, arena.getArchivedBytes());
+  }
+
+  @Test
+  public void shouldPassOnKeepingSmallArchivedOutputOnHeap() throws IOException {
+    OutputArena arena = new OutputArena(true, false, 1024, new SimpleMeterRegistry());
+    OutputBuffer buffer = archivable(arena, 1000);
+    buffer.write(bytes(0, 200));
+    buffer.write(bytes(0, 1000));
+    buffer.archive();
+    assertEquals(1000, arena.getHeapBytes());
+    assertEquals(0, arena.getOffHeapBytes());
+    assertArrayEquals(Arrays.copyOfRange(concat(bytes(0, 200), bytes(0, 1000)), 200, 1200), buffer.toByteArray());
+    assertEquals(1200, buffer.end());
+  }
+
+  @Test
+  public void shouldPassOnReadingCompressedArchiveAcrossBlocks() throws IOException {
+    OutputArena arena = new OutputArena(true, true, 1024, new SimpleMeterRegistry());
+    OutputBuffer buffer = archivable(arena, 1_000_000);
+    byte[] data = new byte[300_000];
+    Random random = new Random(7);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) ('a' + random.nextInt(4));
+    }
+    buffer.write(data);
+    buffer.archive();
+    assertTrue(arena.getOffHeapBytes() < data.length / 2, "stored " + arena.getOffHeapBytes());
+    assertEquals(data.length, arena.getArchivedBytes());
+    assertArrayEquals(data, buffer.toByteArray());
+    int from = ArchivedOutput.BLOCK_SIZE - 100;
+    assertArrayEquals(Arrays.copyOfRange(data, from, from + ArchivedOutput.BLOCK_SIZE + 200),
+          buffer.read(from, ArchivedOutput.BLOCK_SIZE + 200).getBytes());
+    assertArrayEquals(Arrays.copyOfRange(data, data.length - 10, data.length),
+          buffer.read(data.length - 10, 100).getBytes());
+  }
+
+  @Test
+  public void shouldPassOnStoringIncompressibleArchiveAsIs() throws IOException {
+    OutputArena arena = new OutputArena(true, true, 1024, new SimpleMeterRegistry());
+    OutputBuffer buffer = archivable(arena, 100_000);
+    byte[] data = new byte[50_000];
+    new Random(7).nextBytes(data);
+    buffer.write(data);
+    buffer.archive();
+    assertEquals(data.length, arena.getOffHeapBytes());
+    assertArrayEquals(data, buffer.toByteArray());
+  }
+
+  @Test
+  public void shouldPassOnNotArchivingWhenDisabledOrSpilled() throws IOException {
+    OutputArena disabled = new OutputArena(false, false, 1024, new SimpleMeterRegistry());
+    OutputBuffer buffer = archivable(disabled, 100_000);
+    buffer.write(bytes(0, 100));
+    buffer.archive();
+    assertFalse(buffer.isArchived());
+    assertEquals(8192, disabled.getHeapBytes());
+
+    OutputArena arena = new OutputArena(true, false, 1024, new SimpleMeterRegistry());
+    OutputBuffer spilled = new OutputBuffer(OutputPolicy.SPILL, 200, 50, spillDir, null, arena);
+    spilled.write(bytes(0, 100));
+    spilled.archive();
+    assertFalse(spilled.isArchived());
+    assertTrue(spilled.isSpilled());
+    assertEquals(0, arena.getHeapBytes());
+  }
+
+  private byte[] concat(byte[] a, byte[] b) {
+    byte[] res = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, res, a.length, b.length);
+    return res;
+  }
+}